@@ -36,6 +36,24 @@ public class AvailableFeatures {
      */
     public static final long OPEN_CHECK = 1L << 4;
 
+    /**
+     * @since 1.1.0
+     * @see LoadingScreenApi#getMemoryStats
+     */
+    public static final long MEMORY_STATS = 1L << 5;
+
+    /**
+     * @since 1.1.0
+     * @see LoadingScreenApi#createProgressBar
+     */
+    public static final long CUSTOM_PROGRESS_BARS = 1L << 6;
+
+    /**
+     * @since 1.1.0
+     * @see LoadingScreenApi#addListener
+     */
+    public static final long LISTENERS = 1L << 7;
+
     /**
      * All the features that should be available on version 1.0.3.
      *
@@ -44,7 +62,7 @@ public class AvailableFeatures {
     public static final long V1_0_3 = FINAL_ENTRYPOINTS | HEADLESS_CHECK | IPC_CHECK | GET_PROGRESS | OPEN_CHECK;
 
     private static final long MIN_FEATURE = FINAL_ENTRYPOINTS;
-    private static final long MAX_FEATURE = OPEN_CHECK;
+    private static final long MAX_FEATURE = LISTENERS;
 
     public static String toString(long features) {
         if (Long.bitCount(features) <= 1L) {
@@ -59,6 +77,12 @@ public class AvailableFeatures {
                     return "GET_PROGRESS";
                 case (int)OPEN_CHECK:
                     return "OPEN_CHECK";
+                case (int)MEMORY_STATS:
+                    return "MEMORY_STATS";
+                case (int)CUSTOM_PROGRESS_BARS:
+                    return "CUSTOM_PROGRESS_BARS";
+                case (int)LISTENERS:
+                    return "LISTENERS";
             }
             return "";
         }
@@ -14,6 +14,8 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -25,6 +27,13 @@ public class LoadingScreenApi {
     private static final MethodHandle ENABLE_IPC;
     private static final MethodHandle PROGRESS;
     private static final MethodHandle IS_OPEN;
+    private static final MethodHandle MEMORY_STATS;
+    private static final MethodHandle MEMORY_POOL_USAGE;
+    private static final MethodHandle CREATE_PROGRESS_BAR;
+    private static final MethodHandle STEP_PROGRESS_BAR;
+    private static final MethodHandle SET_PROGRESS_BAR;
+    private static final MethodHandle CLOSE_PROGRESS_BAR;
+    private static final MethodHandle ADD_LISTENER;
 
     static {
         long features = 0;
@@ -33,6 +42,13 @@ public class LoadingScreenApi {
         MethodHandle enableIpc = null;
         MethodHandle progress = null;
         MethodHandle isOpen = null;
+        MethodHandle memoryStats = null;
+        MethodHandle memoryPoolUsage = null;
+        MethodHandle createProgressBar = null;
+        MethodHandle stepProgressBar = null;
+        MethodHandle setProgressBar = null;
+        MethodHandle closeProgressBar = null;
+        MethodHandle addListener = null;
 
         final MethodHandles.Lookup lookup = MethodHandles.lookup();
         try {
@@ -74,6 +90,35 @@ public class LoadingScreenApi {
             } catch (Exception e) {
                 loadFailed(">=1.0.3", AvailableFeatures.OPEN_CHECK, e);
             }
+
+            try {
+                memoryStats = lookup.findStatic(alsClass, "getMemoryStats", MethodType.methodType(long[].class));
+                memoryPoolUsage = lookup.findStatic(alsClass, "getMemoryPoolUsage", MethodType.methodType(Map.class));
+                features |= AvailableFeatures.MEMORY_STATS;
+            } catch (Exception e) {
+                loadFailed(">=1.1.0", AvailableFeatures.MEMORY_STATS, e);
+            }
+
+            try {
+                createProgressBar = lookup.findStatic(
+                    alsClass, "createProgressBar", MethodType.methodType(int.class, String.class, long.class)
+                );
+                stepProgressBar = lookup.findStatic(alsClass, "stepProgressBar", MethodType.methodType(void.class, int.class));
+                setProgressBar = lookup.findStatic(
+                    alsClass, "setProgressBar", MethodType.methodType(void.class, int.class, long.class)
+                );
+                closeProgressBar = lookup.findStatic(alsClass, "closeProgressBar", MethodType.methodType(void.class, int.class));
+                features |= AvailableFeatures.CUSTOM_PROGRESS_BARS;
+            } catch (Exception e) {
+                loadFailed(">=1.1.0", AvailableFeatures.CUSTOM_PROGRESS_BARS, e);
+            }
+
+            try {
+                addListener = lookup.findStatic(alsClass, "addListener", MethodType.methodType(void.class, Consumer.class));
+                features |= AvailableFeatures.LISTENERS;
+            } catch (Exception e) {
+                loadFailed(">=1.1.0", AvailableFeatures.LISTENERS, e);
+            }
         } catch (Exception e) {
             final String message = "[ModLoadingScreen] Failed to load LoadingScreenApi. No API features are available.";
             if (FabricLoader.getInstance().isModLoaded("mod-loading-screen")) {
@@ -93,6 +138,15 @@ public class LoadingScreenApi {
         ENABLE_IPC = enableIpc;
         PROGRESS = progress;
         IS_OPEN = isOpen;
+        MEMORY_STATS = memoryStats;
+        MEMORY_POOL_USAGE = memoryPoolUsage;
+        // If only some of them were found, none of them are used
+        final boolean customProgressBars = (features & AvailableFeatures.CUSTOM_PROGRESS_BARS) != 0;
+        CREATE_PROGRESS_BAR = customProgressBars ? createProgressBar : null;
+        STEP_PROGRESS_BAR = stepProgressBar;
+        SET_PROGRESS_BAR = setProgressBar;
+        CLOSE_PROGRESS_BAR = closeProgressBar;
+        ADD_LISTENER = addListener;
 
         System.out.println("[ModLoadingScreen] API loaded with features: " + AvailableFeatures.toString(FEATURES));
     }
@@ -276,10 +330,11 @@ public class LoadingScreenApi {
         return getAllProgress().get(barName);
     }
 
-    // TODO: Put a note in this when custom progress bars are added.
     /**
      * Returns whether a loading screen is currently active. If {@link #getFeatures} doesn't return
-     * {@link AvailableFeatures#OPEN_CHECK}, this will always return {@code false}.
+     * {@link AvailableFeatures#OPEN_CHECK}, this will always return {@code false}. Custom progress bars created with
+     * {@link #createProgressBar} are only shown while this returns {@code true}, though they can be created and
+     * updated at any time.
      *
      * @return {@code true} if there is a loading screen open.
      *
@@ -298,6 +353,140 @@ public class LoadingScreenApi {
         }
     }
 
+    /**
+     * Returns the latest memory and garbage collection statistics, as shown on the loading screen. These are also
+     * collected in headless environments. This will return {@code null} if the memory display is disabled in the
+     * config, or if {@link #getFeatures} doesn't return {@link AvailableFeatures#MEMORY_STATS}.
+     *
+     * @see AvailableFeatures#MEMORY_STATS
+     *
+     * @since 1.1.0
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static MemoryStats getMemoryStats() {
+        if (MEMORY_STATS == null) {
+            return null;
+        }
+        try {
+            final long[] stats = (long[])MEMORY_STATS.invoke();
+            if (stats == null) {
+                return null;
+            }
+            final Map<String, Long> poolUsage = (Map<String, Long>)MEMORY_POOL_USAGE.invoke();
+            // Indexed by the constants in MemoryMonitor
+            return new MemoryStats(
+                stats[0], stats[1], stats[2], stats[3], stats[4],
+                Collections.unmodifiableMap(new LinkedHashMap<>(poolUsage))
+            );
+        } catch (Throwable t) {
+            return rethrow(t);
+        }
+    }
+
+    /**
+     * Creates a custom progress bar, which is shown on the loading screen below the entrypoint progress bars until
+     * it's closed. Its progress can also be read with {@link #getProgress}. If {@link #getFeatures} doesn't return
+     * {@link AvailableFeatures#CUSTOM_PROGRESS_BARS}, this will return a handle that does nothing.
+     *
+     * <p>The returned handle can be updated from any thread, and updating it doesn't allocate or block, so it's fine
+     * to update it for every item of work. The loading screen only redraws a few times per second, no matter how
+     * often the bar is updated.
+     *
+     * @param name The name of the progress bar, which is shown on it. This should be unique, for example by including
+     * your mod id, as creating a bar with the same name as an open bar replaces it.
+     * @param max The progress at which the bar is full.
+     *
+     * @see AvailableFeatures#CUSTOM_PROGRESS_BARS
+     *
+     * @since 1.1.0
+     */
+    public static ProgressBarHandle createProgressBar(String name, long max) {
+        if (CREATE_PROGRESS_BAR == null) {
+            return new ProgressBarHandle(-1);
+        }
+        try {
+            return new ProgressBarHandle((int)CREATE_PROGRESS_BAR.invokeExact(name, max));
+        } catch (Throwable t) {
+            return rethrow(t);
+        }
+    }
+
+    static void stepProgressBar(int id) {
+        try {
+            STEP_PROGRESS_BAR.invokeExact(id);
+        } catch (Throwable t) {
+            rethrow(t);
+        }
+    }
+
+    static void setProgressBar(int id, long value) {
+        try {
+            SET_PROGRESS_BAR.invokeExact(id, value);
+        } catch (Throwable t) {
+            rethrow(t);
+        }
+    }
+
+    static void closeProgressBar(int id) {
+        try {
+            CLOSE_PROGRESS_BAR.invokeExact(id);
+        } catch (Throwable t) {
+            rethrow(t);
+        }
+    }
+
+    /**
+     * Adds a listener for progress bars, memory statistics, and the loading screen closing. If the loading screen has
+     * already closed, only {@link LoadingScreenListener#onScreenClosed} is called, on the calling thread. If
+     * {@link #getFeatures} doesn't return {@link AvailableFeatures#LISTENERS}, the listener is never called.
+     *
+     * @see LoadingScreenListener
+     * @see AvailableFeatures#LISTENERS
+     *
+     * @since 1.1.0
+     */
+    public static void addListener(LoadingScreenListener listener) {
+        if (ADD_LISTENER == null) return;
+        final Consumer<List<Object[]>> batchListener = batch -> {
+            for (final Object[] event : batch) {
+                dispatchEvent(listener, event);
+            }
+        };
+        try {
+            ADD_LISTENER.invoke(batchListener);
+        } catch (Throwable t) {
+            rethrow(t);
+        }
+    }
+
+    // Event ids and arguments are documented in ListenerDispatcher
+    @SuppressWarnings("unchecked")
+    private static void dispatchEvent(LoadingScreenListener listener, Object[] event) {
+        switch ((int)event[0]) {
+            case 0:
+                listener.onBarOpened((String)event[1], (long)event[2]);
+                break;
+            case 1:
+                listener.onBarProgress((String)event[1], (long)event[2]);
+                break;
+            case 2:
+                listener.onBarClosed((String)event[1]);
+                break;
+            case 3: {
+                final long[] stats = (long[])event[1];
+                listener.onMemoryStats(new MemoryStats(
+                    stats[0], stats[1], stats[2], stats[3], stats[4],
+                    Collections.unmodifiableMap(new LinkedHashMap<>((Map<String, Long>)event[2]))
+                ));
+                break;
+            }
+            case 4:
+                listener.onScreenClosed();
+                break;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static <T extends Throwable, R> R rethrow(Throwable t) throws T {
         throw (T)t;
@@ -0,0 +1,43 @@
+package io.github.gaming32.modloadingscreen.api;
+
+/**
+ * Receives loading screen events. All methods are called on a single dispatcher thread, in the order the events
+ * happened, and do nothing by default. Events are delivered in batches a few times per second, so a bar's progress
+ * is only delivered when it has changed since the last batch, and a listener that is slow to return only delays
+ * later events, not the loading itself. A listener that throws an exception is removed.
+ *
+ * <p>Events are also delivered in headless environments, where there is no loading screen to show them.
+ *
+ * @see LoadingScreenApi#addListener
+ *
+ * @since 1.1.0
+ */
+public interface LoadingScreenListener {
+    /**
+     * Called when a progress bar is opened, either for an entrypoint or by {@link LoadingScreenApi#createProgressBar}.
+     * When a listener is added, this is called for the bars that are already open.
+     */
+    default void onBarOpened(String name, long max) {
+    }
+
+    /**
+     * Called when the progress of a bar has changed. Not every change is delivered, only the latest progress.
+     */
+    default void onBarProgress(String name, long progress) {
+    }
+
+    default void onBarClosed(String name) {
+    }
+
+    /**
+     * Called with new memory statistics, if the memory display is enabled in the config.
+     */
+    default void onMemoryStats(MemoryStats stats) {
+    }
+
+    /**
+     * Called when the loading screen closes. No events are delivered after this.
+     */
+    default void onScreenClosed() {
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.gaming32.modloadingscreen.api;
+
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.Map;
+
+/**
+ * A snapshot of the memory and garbage collection statistics shown on the loading screen.
+ *
+ * @see LoadingScreenApi#getMemoryStats
+ *
+ * @since 1.1.0
+ */
+public final class MemoryStats {
+    private final long heapUsed;
+    private final long heapMax;
+    private final long gcCount;
+    private final long gcTime;
+    private final long allocationRate;
+    private final Map<String, Long> poolUsage;
+
+    MemoryStats(long heapUsed, long heapMax, long gcCount, long gcTime, long allocationRate, Map<String, Long> poolUsage) {
+        this.heapUsed = heapUsed;
+        this.heapMax = heapMax;
+        this.gcCount = gcCount;
+        this.gcTime = gcTime;
+        this.allocationRate = allocationRate;
+        this.poolUsage = poolUsage;
+    }
+
+    /**
+     * Returns the number of bytes used in the heap.
+     */
+    public long getHeapUsed() {
+        return heapUsed;
+    }
+
+    /**
+     * Returns the maximum size of the heap in bytes.
+     */
+    public long getHeapMax() {
+        return heapMax;
+    }
+
+    /**
+     * Returns the total number of garbage collections that have happened, across all collectors.
+     */
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * Returns the total time spent in garbage collection, in milliseconds, across all collectors.
+     */
+    public long getGcTime() {
+        return gcTime;
+    }
+
+    /**
+     * Returns the recent allocation rate, in bytes per second.
+     */
+    public long getAllocationRate() {
+        return allocationRate;
+    }
+
+    /**
+     * Returns the number of bytes used in each heap memory pool, keyed by pool name.
+     */
+    @Unmodifiable
+    public Map<String, Long> getPoolUsage() {
+        return poolUsage;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryStats{" +
+            "heapUsed=" + heapUsed +
+            ", heapMax=" + heapMax +
+            ", gcCount=" + gcCount +
+            ", gcTime=" + gcTime +
+            ", allocationRate=" + allocationRate +
+            ", poolUsage=" + poolUsage +
+            '}';
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.gaming32.modloadingscreen.api;
+
+/**
+ * A custom progress bar on the loading screen. All methods can be called from any thread, and none of them allocate.
+ * If custom progress bars aren't available, all methods do nothing. Once the bar or the loading screen is closed,
+ * updates to the bar do nothing too.
+ *
+ * @see LoadingScreenApi#createProgressBar
+ *
+ * @since 1.1.0
+ */
+public final class ProgressBarHandle implements AutoCloseable {
+    private final int id;
+    private volatile boolean closed;
+
+    ProgressBarHandle(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Adds one to the progress of the bar.
+     */
+    public void step() {
+        if (id < 0 || closed) return;
+        LoadingScreenApi.stepProgressBar(id);
+    }
+
+    /**
+     * Sets the progress of the bar.
+     */
+    public void set(long value) {
+        if (id < 0 || closed) return;
+        LoadingScreenApi.setProgressBar(id, value);
+    }
+
+    /**
+     * Removes the bar from the loading screen. Further updates to it are ignored.
+     */
+    @Override
+    public void close() {
+        if (id < 0 || closed) return;
+        closed = true;
+        LoadingScreenApi.closeProgressBar(id);
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.gaming32.modloadingscreen;
+
+import io.github.gaming32.modloadingscreen.api.LoadingScreenApi;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading progress through {@link LoadingScreenApi}, which goes through a {@link java.lang.invoke.MethodHandle}, compared
+ * to reading the same map directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiBenchmark {
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.start();
+        ActualLoadingScreen.createProgressBar("main", 350);
+    }
+
+    @Benchmark
+    public Integer getProgress() {
+        return LoadingScreenApi.getProgress("main");
+    }
+
+    @Benchmark
+    public Integer getProgressDirect() {
+        return ActualLoadingScreen.progress.get("main");
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging the line for an entrypoint, which is all the thread running the entrypoints pays for it, with the output
+ * replaced by a stream that discards everything. Messages the logger thread can't keep up with are dropped, which costs
+ * about the same as queueing them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncLoggerBenchmark {
+    private static final PrintStream NULL_STREAM = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    private AsyncLogger logger;
+    private AsyncLogger infoLogger;
+
+    @Setup
+    public void setup() {
+        logger = new AsyncLogger("[ModLoadingScreen] ", NULL_STREAM, NULL_STREAM);
+        logger.setLevel(AsyncLogger.DEBUG);
+        infoLogger = new AsyncLogger("[ModLoadingScreen] ", NULL_STREAM, NULL_STREAM);
+    }
+
+    @TearDown
+    public void tearDown() {
+        logger.flush(1000L);
+    }
+
+    @Benchmark
+    public void log() {
+        logger.log(AsyncLogger.DEBUG, "Calling entrypoint container for mod 'examplemod'", null);
+    }
+
+    @Benchmark
+    public void logFiltered() {
+        infoLogger.log(AsyncLogger.DEBUG, "Calling entrypoint container for mod 'examplemod'", null);
+    }
+}
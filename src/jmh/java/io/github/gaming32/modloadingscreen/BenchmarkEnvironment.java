@@ -0,0 +1,41 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Lets {@link ActualLoadingScreen} load outside the game, the same way it does in the IPC client, headless and with a
+ * config that keeps it from logging every call.
+ */
+final class BenchmarkEnvironment {
+    private static boolean started;
+
+    private BenchmarkEnvironment() {
+    }
+
+    /**
+     * Must be called before anything else touches {@link ActualLoadingScreen}.
+     */
+    static synchronized void start() {
+        if (started) return;
+        started = true;
+        try {
+            final Path dir = Files.createTempDirectory("mod-loading-screen-jmh");
+            Files.write(dir.resolve("config.properties"), Arrays.asList(
+                "headlessOutput=quiet",
+                "enableMemoryDisplay=false"
+            ), StandardCharsets.ISO_8859_1);
+            System.setProperty("java.awt.headless", "true");
+            System.setProperty("mlsipc.present", "true");
+            System.setProperty("mlsipc.config", dir.toString());
+            System.setProperty("mlsipc.cache", dir.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ActualLoadingScreen.startLoadingScreen();
+    }
+}
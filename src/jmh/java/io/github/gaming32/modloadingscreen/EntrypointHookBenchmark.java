@@ -0,0 +1,178 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hooks injected into {@code EntrypointUtils} before every entrypoint and after every entrypoint type, with the UI
+ * disabled, and building the text of a progress bar, which the UI does for every bar on every frame. The hook that
+ * takes an id shouldn't allocate at all before an entrypoint, which {@code -PjmhArgs="EntrypointHook -prof gc"} shows
+ * as a {@code gc.alloc.rate.norm} of about 0.
+ *
+ * <p>The hooks run as they do in the IPC client, which only updates the progress bar, as that's the only way
+ * {@link ActualLoadingScreen} can be loaded outside the game. {@code gameSide} makes the same calls that the hook makes
+ * in the game, on objects of its own: it also records the entrypoint in the startup trace and the launch history, and
+ * either queues it for an IPC writer that discards everything, or checks whether it's logged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntrypointHookBenchmark {
+    // The trace and the history grow with every entrypoint, so they're replaced after as many as a big modpack has
+    private static final int ENTRYPOINTS_PER_LAUNCH = 1000;
+    private static final long EXPECTED_NANOS = TimeUnit.SECONDS.toNanos(2L);
+    private static final OutputStream NULL_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private ProgressRegistry.Bar bar;
+    private ProgressRegistry.Bar estimatedBar;
+    private EntrypointTable.Type type;
+    private int typeId;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.start();
+        ActualLoadingScreen.createProgressBar("main", Long.MAX_VALUE);
+
+        final ProgressRegistry registry = new ProgressRegistry();
+        bar = registry.open("main", "ModInitializer", 350);
+        bar.set(120);
+        bar.setDetail("Example Mod");
+        estimatedBar = registry.open("client", "ClientModInitializer", 350);
+        estimatedBar.set(120);
+        estimatedBar.setDetail("Example Mod");
+        estimatedBar.setExpectedTotal(TimeUnit.SECONDS.toNanos(95L));
+        estimatedBar.beginEntrypoint(TimeUnit.SECONDS.toNanos(2L));
+
+        final int mod = ActualLoadingScreen.entrypointTable.addMod("examplemod", "Example Mod", "1.0.0");
+        type = new EntrypointTable.Type(
+            "main", "ModInitializer", ActualLoadingScreen.progressRegistry.get("main"), new int[] {mod}, null
+        );
+        typeId = ActualLoadingScreen.entrypointTable.addType(type);
+    }
+
+    @Benchmark
+    public void beforeSingleEntrypoint() {
+        ActualLoadingScreen.beforeSingleEntrypoint("main", "ModInitializer", "examplemod", "Example Mod");
+    }
+
+    @Benchmark
+    public void beforeSingleEntrypointById() {
+        type.position = 0;
+        ActualLoadingScreen.beforeSingleEntrypoint(typeId);
+    }
+
+    @Benchmark
+    public void afterEntrypointTypeById(OpenType open) {
+        ActualLoadingScreen.afterEntrypointType(open.typeId);
+    }
+
+    // The calls ActualLoadingScreen.beforeSingleEntrypoint makes in the game, in the same order
+    @Benchmark
+    public void gameSide(Game game) {
+        if (++game.entrypoints == ENTRYPOINTS_PER_LAUNCH) {
+            game.newLaunch();
+        }
+        final ProgressRegistry.Bar bar = game.bar;
+        bar.setDetail("Example Mod");
+        bar.increment();
+        game.trace.beginMod("client", "ClientModInitializer", "examplemod", "Example Mod");
+        game.history.begin("client", "examplemod", "1.0.0");
+        bar.beginEntrypoint(EXPECTED_NANOS);
+        if (game.writer != null) {
+            game.writer.send(IpcProtocol.ENTRYPOINT_ESTIMATE, "client", EXPECTED_NANOS / 1000L);
+            game.writer.send(
+                IpcProtocol.BEFORE_SINGLE_ENTRYPOINT, "client", "ClientModInitializer", "examplemod", "Example Mod"
+            );
+        } else if (game.logger.isEnabled(AsyncLogger.DEBUG)) {
+            game.logger.log(AsyncLogger.DEBUG, "Calling entrypoint container for mod 'examplemod'", null);
+        }
+    }
+
+    @Benchmark
+    public String label() {
+        return ActualLoadingScreen.getLabel(bar, System.nanoTime());
+    }
+
+    @Benchmark
+    public String labelWithEstimate() {
+        return ActualLoadingScreen.getLabel(estimatedBar, System.nanoTime());
+    }
+
+    @State(Scope.Benchmark)
+    public static class OpenType {
+        private int typeId;
+
+        @Setup
+        public void setup() {
+            BenchmarkEnvironment.start();
+            final int mod = ActualLoadingScreen.entrypointTable.addMod("examplemod", "Example Mod", "1.0.0");
+            typeId = ActualLoadingScreen.entrypointTable.addType(new EntrypointTable.Type(
+                "client", "ClientModInitializer", null, new int[] {mod}, null
+            ));
+        }
+
+        // The hook closes the type's bar, so it has to be open again every time. That's kept out of the time, but not
+        // out of gc.alloc.rate.norm, which counts the 216 bytes of opening it.
+        @Setup(Level.Invocation)
+        public void open() {
+            ActualLoadingScreen.progressRegistry.open("client", "ClientModInitializer", 1);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Game {
+        @Param({"true", "false"})
+        public boolean ipc;
+
+        private AsyncIpcWriter writer;
+        private AsyncLogger logger;
+        private ProgressRegistry.Bar bar;
+        private StartupTrace trace;
+        private LaunchHistory history;
+        private int entrypoints;
+
+        @Setup
+        public void setup() throws IOException {
+            if (ipc) {
+                writer = new AsyncIpcWriter(
+                    new IpcWriter(NULL_STREAM, IpcProtocol.V2), 16L, (message, e) -> e.printStackTrace(), w -> 0
+                );
+            }
+            final PrintStream nullPrintStream = new PrintStream(NULL_STREAM);
+            logger = new AsyncLogger("[ModLoadingScreen] ", nullPrintStream, nullPrintStream);
+            bar = new ProgressRegistry().open("client", "ClientModInitializer", Long.MAX_VALUE);
+            bar.setExpectedTotal(TimeUnit.SECONDS.toNanos(95L));
+            newLaunch();
+        }
+
+        @TearDown
+        public void tearDown() {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+
+        void newLaunch() {
+            trace = new StartupTrace();
+            trace.reserve(ENTRYPOINTS_PER_LAUNCH);
+            history = new LaunchHistory();
+            history.reserve(ENTRYPOINTS_PER_LAUNCH);
+            entrypoints = 0;
+        }
+    }
+}
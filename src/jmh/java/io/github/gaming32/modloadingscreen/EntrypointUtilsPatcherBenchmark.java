@@ -0,0 +1,45 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Patching the loader's {@code EntrypointUtils}, which happens once per launch before any mod can run. The class file
+ * is the one from the Fabric Loader on the classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntrypointUtilsPatcherBenchmark {
+    private byte[] classFile;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(
+            "net/fabricmc/loader/impl/entrypoint/EntrypointUtils.class"
+        )) {
+            if (in == null) {
+                throw new IllegalStateException("EntrypointUtils isn't on the classpath");
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            classFile = out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public byte[] patch() {
+        return EntrypointUtilsPatcher.patch(classFile, false);
+    }
+}
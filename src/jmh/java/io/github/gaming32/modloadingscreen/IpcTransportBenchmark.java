@@ -0,0 +1,88 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of sending one entrypoint event and flushing it, as the IPC writer thread does when events trickle in one at
+ * a time. The pipe is an in-process OS pipe, so each flush is a system call, like the pipe to the IPC client. Both
+ * transports are drained by a reader thread, standing in for the IPC client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IpcTransportBenchmark {
+    private static final String[] MOD_NAMES = new String[64];
+
+    static {
+        for (int i = 0; i < MOD_NAMES.length; i++) {
+            MOD_NAMES[i] = "Example Mod " + i;
+        }
+    }
+
+    @Param({"pipe", "shm"})
+    public String transport;
+
+    private IpcWriter writer;
+    private Path ringFile;
+    private Thread drainer;
+    private long sequence;
+
+    @Setup
+    public void setup() throws IOException {
+        final OutputStream out;
+        final InputStream in;
+        if (transport.equals("pipe")) {
+            final Pipe pipe = Pipe.open();
+            out = Channels.newOutputStream(pipe.sink());
+            in = Channels.newInputStream(pipe.source());
+        } else {
+            ringFile = Files.createTempFile("ipc-ring-", ".bin");
+            final SharedMemoryRing ring = SharedMemoryRing.create(ringFile, SharedMemoryRing.DEFAULT_CAPACITY);
+            final SharedMemoryRing.RingInputStream ringIn = ring.input(TimeUnit.MICROSECONDS.toNanos(50L));
+            out = ring.output(() -> true, ringIn::endOfInput);
+            in = ringIn;
+        }
+        drainer = new Thread(() -> {
+            final byte[] buffer = new byte[8192];
+            try {
+                while (in.read(buffer) != -1) {
+                    // Discard
+                }
+            } catch (IOException ignored) {
+            }
+        }, "IpcDrainer");
+        drainer.setDaemon(true);
+        drainer.start();
+        writer = new IpcWriter(out, IpcProtocol.V2);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        writer.close();
+        drainer.join(1000L);
+        if (ringFile != null) {
+            Files.deleteIfExists(ringFile);
+        }
+    }
+
+    @Benchmark
+    public void sendEvent() throws IOException {
+        writer.write(
+            IpcProtocol.BEFORE_SINGLE_ENTRYPOINT, "main", "ModInitializer", "examplemod",
+            MOD_NAMES[(int)(sequence++ & (MOD_NAMES.length - 1))]
+        );
+        writer.flush();
+    }
+}
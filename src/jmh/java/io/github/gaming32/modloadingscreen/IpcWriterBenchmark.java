@@ -0,0 +1,69 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding entrypoint events, and queueing them for the IPC writer thread, with the pipe replaced by a stream that
+ * discards everything, so that only this mod's own cost is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IpcWriterBenchmark {
+    // About how many events the writer thread gets per flush during startup
+    private static final int EVENTS_PER_FLUSH = 64;
+    private static final OutputStream NULL_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private IpcWriter writer;
+    private AsyncIpcWriter asyncWriter;
+    private int events;
+
+    @Setup
+    public void setup() throws IOException {
+        writer = new IpcWriter(NULL_STREAM, IpcProtocol.V2);
+        asyncWriter = new AsyncIpcWriter(
+            new IpcWriter(NULL_STREAM, IpcProtocol.V2), 16L, (message, e) -> e.printStackTrace(), w -> 0
+        );
+    }
+
+    @TearDown
+    public void tearDown() {
+        asyncWriter.close();
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        writer.write(IpcProtocol.BEFORE_SINGLE_ENTRYPOINT, "main", "ModInitializer", "examplemod", "Example Mod");
+        if (++events % EVENTS_PER_FLUSH == 0) {
+            writer.flush();
+        }
+    }
+
+    @Benchmark
+    public void encodeMemoryStats() throws IOException {
+        writer.write(IpcProtocol.MEMORY_STATS, 123_456_789L, 4_294_967_296L, 42L, 1234L, 98_765_432L);
+        if (++events % EVENTS_PER_FLUSH == 0) {
+            writer.flush();
+        }
+    }
+
+    @Benchmark
+    public void send() {
+        asyncWriter.send(IpcProtocol.BEFORE_SINGLE_ENTRYPOINT, "main", "ModInitializer", "examplemod", "Example Mod");
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One loader thread advancing a bar while three threads read the progress, like the UI and API do. The
+ * {@link ProgressRegistry} is compared against a boxed {@link LinkedHashMap} like the one it replaced, synchronized so
+ * that both sides are actually thread-safe.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressRegistryBenchmark {
+    private static final String[] NAMES = {"preLaunch", "main", "client"};
+
+    private ProgressRegistry registry;
+    private ProgressRegistry.Bar bar;
+    private Map<String, Integer> legacy;
+
+    @Setup
+    public void setup() {
+        registry = new ProgressRegistry();
+        legacy = new LinkedHashMap<>();
+        for (final String name : NAMES) {
+            bar = registry.open(name, "ModInitializer", Integer.MAX_VALUE);
+            legacy.put(name, 0);
+        }
+    }
+
+    @Benchmark
+    @Group("registry")
+    @GroupThreads(1)
+    public long registryWriter() {
+        return bar.increment();
+    }
+
+    @Benchmark
+    @Group("registry")
+    @GroupThreads(3)
+    public void registryReader(Blackhole bh) {
+        for (final ProgressRegistry.Bar openBar : registry.snapshot()) {
+            bh.consume(openBar.name);
+            bh.consume(openBar.get());
+        }
+    }
+
+    @Benchmark
+    @Group("legacy")
+    @GroupThreads(1)
+    public void legacyWriter() {
+        synchronized (legacy) {
+            final Integer old = legacy.get("client");
+            legacy.put("client", old != null ? old + 1 : 1);
+        }
+    }
+
+    @Benchmark
+    @Group("legacy")
+    @GroupThreads(3)
+    public void legacyReader(Blackhole bh) {
+        synchronized (legacy) {
+            for (final Map.Entry<String, Integer> entry : legacy.entrySet()) {
+                bh.consume(entry.getKey());
+                bh.consume(entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drawing a frame with every progress bar updated, with the Java2D renderer and with the Swing components that the
+ * Swing renderer uses, both into an image so that no screen is needed. The Swing panel is as tall as all of its bars,
+ * like the dialog after it's packed, while the Java2D renderer only draws the bars that fit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RendererBenchmark {
+    private static final int WIDTH = 960;
+    private static final int HEIGHT = 540;
+    private static final String MEMORY_LABEL = "512 MB / 2048 MB \u2014 3 GCs (12 ms) \u2014 40 MB/s";
+
+    @Param({"4", "100", "500"})
+    public int bars;
+
+    private ProgressRegistry.Bar[] openBars;
+    private Java2dRenderer renderer;
+    private BufferedImage java2dImage;
+    private Graphics2D java2dGraphics;
+    private JPanel panel;
+    private JProgressBar[] progressBars;
+    private BufferedImage swingImage;
+    private Graphics2D swingGraphics;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.start();
+        final ProgressRegistry registry = new ProgressRegistry();
+        for (int i = 0; i < bars; i++) {
+            final ProgressRegistry.Bar bar = registry.open("bar" + i, "ModInitializer", 350);
+            bar.set(120);
+            bar.setDetail("Example Mod");
+        }
+        openBars = registry.snapshot();
+
+        renderer = new Java2dRenderer(WIDTH, HEIGHT, null);
+        java2dImage = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        java2dGraphics = java2dImage.createGraphics();
+
+        ActualLoadingScreen.setupLookAndFeel();
+        panel = new JPanel();
+        panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+        final JProgressBar memoryBar = new JProgressBar(0, 2048);
+        memoryBar.setStringPainted(true);
+        memoryBar.setValue(512);
+        memoryBar.setString(MEMORY_LABEL);
+        panel.add(memoryBar);
+        progressBars = new JProgressBar[bars];
+        for (int i = 0; i < bars; i++) {
+            progressBars[i] = new JProgressBar(0, 350);
+            progressBars[i].setStringPainted(true);
+            panel.add(progressBars[i]);
+        }
+        final Dimension size = panel.getPreferredSize();
+        panel.setSize(WIDTH, Math.max(HEIGHT, size.height));
+        panel.doLayout();
+        swingImage = new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_RGB);
+        swingGraphics = swingImage.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        java2dGraphics.dispose();
+        swingGraphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage java2d() {
+        renderer.paint(java2dGraphics, openBars, System.nanoTime(), 0.25, MEMORY_LABEL);
+        return java2dImage;
+    }
+
+    @Benchmark
+    public BufferedImage swing() {
+        final long now = System.nanoTime();
+        for (int i = 0; i < openBars.length; i++) {
+            progressBars[i].setValue((int)openBars[i].get());
+            progressBars[i].setString(ActualLoadingScreen.getLabel(openBars[i], now));
+        }
+        panel.paint(swingGraphics);
+        return swingImage;
+    }
+}
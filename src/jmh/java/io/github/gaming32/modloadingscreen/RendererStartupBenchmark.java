@@ -0,0 +1,69 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drawing the first frame of each renderer in a fresh JVM, which is mostly loading and initializing the classes it
+ * needs: FlatLaf and Swing for the Swing renderer, and only Java2D for the other. Every fork measures a single
+ * frame, so both the class loading and the first paint are counted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RendererStartupBenchmark {
+    private static final int WIDTH = 960;
+    private static final int HEIGHT = 540;
+
+    private ProgressRegistry.Bar[] bars;
+    private BufferedImage image;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.start();
+        final ProgressRegistry registry = new ProgressRegistry();
+        final ProgressRegistry.Bar bar = registry.open("main", "ModInitializer", 350);
+        bar.setDetail("Example Mod");
+        bars = registry.snapshot();
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage java2d() {
+        final Graphics2D g = image.createGraphics();
+        try {
+            new Java2dRenderer(WIDTH, HEIGHT, null).paint(g, bars, System.nanoTime(), 0.0, null);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage swing() {
+        ActualLoadingScreen.setupLookAndFeel();
+        final JPanel panel = new JPanel();
+        panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+        panel.add(Box.createVerticalGlue());
+        final JProgressBar progressBar = new JProgressBar(0, 350);
+        progressBar.setStringPainted(true);
+        progressBar.setString(ActualLoadingScreen.getLabel(bars[0], System.nanoTime()));
+        panel.add(progressBar);
+        panel.setSize(WIDTH, HEIGHT);
+        panel.doLayout();
+        final Graphics2D g = image.createGraphics();
+        try {
+            panel.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -2,15 +2,34 @@ package io.github.gaming32.modloadingscreen;
 
 import com.formdev.flatlaf.FlatDarkLaf;
 import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.fabricmc.loader.api.entrypoint.EntrypointContainer;
+import net.fabricmc.loader.api.metadata.ModMetadata;
 import net.fabricmc.loader.api.metadata.version.VersionPredicate;
+import net.fabricmc.loader.impl.util.ExceptionUtil;
 import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.Timer;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
 import java.nio.file.*;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 import static io.github.gaming32.modloadingscreen.ModLoadingScreen.ACTUAL_LOADING_SCREEN;
 
@@ -21,6 +40,9 @@ public class ActualLoadingScreen {
     private static final Path CONFIG_DIR = IS_IPC_CLIENT
         ? Paths.get(System.getProperty("mlsipc.config"))
         : FabricLoader.getInstance().getConfigDir().resolve("mod-loading-screen");
+    static final Path CACHE_DIR = IS_IPC_CLIENT
+        ? Paths.get(System.getProperty("mlsipc.cache", "."))
+        : FabricLoader.getInstance().getGameDir().resolve(".cache/mod-loading-screen");
     private static final Set<String> IGNORED_BUILTIN = new HashSet<>(Arrays.asList(
         RUNNING_ON_QUILT ? "quilt_loader" : "fabricloader", "java"
     ));
@@ -30,33 +52,190 @@ public class ActualLoadingScreen {
     public static final boolean IS_HEADLESS = GraphicsEnvironment.isHeadless();
     public static final boolean ENABLE_IPC =
         !IS_IPC_CLIENT && !IS_HEADLESS && !Boolean.getBoolean("mod-loading-screen.disableIpc");
+    private static final int IPC_PROTOCOL_VERSION =
+        Integer.getInteger("mod-loading-screen.ipcProtocol", IpcProtocol.LATEST_VERSION);
+    private static final long IPC_FLUSH_INTERVAL_MS = 16L;
+    private static final long STATUS_INTERVAL_MS = 250L;
+    // Shared memory rings last modified longer ago than this can't belong to an instance that's still loading
+    private static final long STALE_RING_AGE_MS = TimeUnit.HOURS.toMillis(6L);
+    private static final int BACKGROUND_WIDTH = 960;
+    private static final int BACKGROUND_HEIGHT = 540;
+    // Progress bars weighted by expected time go from 0 to this
+    private static final int ESTIMATE_RESOLUTION = 1000;
+    private static final int STARTUP_THREADS = 3;
+    private static final double BYTES_PER_MB = 1024L * 1024L;
+    // How long shutdown waits for queued log messages to be written
+    private static final long LOG_FLUSH_TIMEOUT_MS = 500L;
+    private static final String LOG_PREFIX = IS_IPC_CLIENT
+        ? "[ModLoadingScreen (IPC client)] "
+        : ENABLE_IPC
+            ? "[ModLoadingScreen (IPC server)] "
+            : "[ModLoadingScreen] ";
+    private static final AsyncLogger logger = new AsyncLogger(LOG_PREFIX, System.out, System.err);
 
     // Unlike progressBars, this is populated on both the IPC client and IPC server, allowing it to be used from the API
-    public static final Map<String, Integer> progress = new LinkedHashMap<>();
-    private static final Map<String, JProgressBar> progressBars = new LinkedHashMap<>();
+    static final ProgressRegistry progressRegistry = new ProgressRegistry();
+    // A read-only view of progressRegistry, kept for older versions of the API
+    public static final Map<String, Integer> progress = progressRegistry.asMap();
+    // The UI state is written to progressRegistry and memoryUsage by any thread, and applied to the Swing components
+    // by uiTimer on the EDT. progressBars and the Swing components are only accessed from the EDT.
+    private static volatile long[] memoryUsage;
+    private static volatile long[] classLoading;
+    private static volatile long[] mixinStats;
+    private static volatile boolean uiDirty;
+    private static final Map<ProgressRegistry.Bar, JProgressBar> progressBars = new LinkedHashMap<>();
+    private static Timer uiTimer;
     private static JFrame dialog;
     private static JLabel label;
     private static JProgressBar memoryBar;
-    private static DataOutputStream ipcOut;
-    private static PrintStream logFile;
-    private static Thread memoryThread;
+    private static JPanel statusPanel;
+    private static JLabel classLoadingLabel;
+    private static JLabel mixinLabel;
+    // Used instead of dialog and the other Swing components with renderer=java2d
+    private static volatile Java2dRenderer java2dRenderer;
+    private static volatile AsyncIpcWriter ipcOut;
+    private static MemoryMonitor memoryMonitor;
+    private static StartupTrace startupTrace;
+    private static LaunchHistory launchHistory;
+    private static Instrumentation instrumentation;
+    private static volatile ClassLoadProbe classLoadProbe;
+    private static volatile MixinProbe mixinProbe;
+    // The probes are started on the agent thread, which may only get to them after the loading screen has closed
+    private static final Object PROBES_LOCK = new Object();
+    private static boolean probesClosed;
+    private static Thread statusThread;
+    // The entrypoint invocations that the hooks in EntrypointUtils refer to by id
+    static final EntrypointTable entrypointTable = new EntrypointTable();
+    // The expected duration of the entrypoints that haven't started yet, by entrypoint type and mod id. Only used when
+    // entrypoints aren't invoked through the hooks that use entrypointTable.
+    private static final Map<String, Map<String, Long>> expectedDurations = new ConcurrentHashMap<>();
+    // Custom progress bars from the API, indexed by id. Ids are never reused, so the handle of a closed bar can't affect
+    // a newer one. Copy-on-write, so that finding a bar to update is a single volatile read.
+    private static final Object CUSTOM_BARS_LOCK = new Object();
+    private static volatile ProgressRegistry.Bar[] customBars = new ProgressRegistry.Bar[0];
+    // The progress last sent to the IPC client for each custom bar, or Long.MIN_VALUE if the bar hasn't been sent yet.
+    // Only accessed by the IPC writer thread.
+    private static long[] sentCustomBarProgress = new long[0];
+    // Created when the first listener is added through the API. Both guarded by the ActualLoadingScreen class.
+    private static volatile ListenerDispatcher listenerDispatcher;
+    private static boolean screenClosed;
+    // Set in headless environments, where HeadlessProgress replaces the line for each entrypoint
+    private static boolean quietEntrypoints;
+    // The level of the line logged for each entrypoint
+    private static int entrypointLogLevel = AsyncLogger.DEBUG;
 
     private static boolean enableMemoryDisplay = true;
+    private static int memoryUpdateThreshold = 8;
+    private static boolean enableStartupTrace = true;
+    private static int uiFrameRate = 30;
+    private static boolean enableClassDataSharing = true;
+    private static boolean enableProgressEstimates = true;
+    private static boolean enableLaunchLog = true;
+    private static boolean enableClassLoadTracking = true;
+    private static boolean enableMixinTracking = true;
+    private static boolean enableEntrypointProxies = false;
+    private static int regressionThresholdPercent = 25;
+    private static boolean enableParallelEntrypoints = false;
+    private static final Set<String> parallelEntrypointMods = new LinkedHashSet<>();
+    // One of progress, verbose, or quiet
+    private static String headlessOutput = "progress";
+    private static int headlessSummaryInterval = 5;
+    private static String headlessJsonOutput = "";
+    // Either pipe or shm
+    private static String ipcTransport = "pipe";
+    // Either swing or java2d. The IPC client is told which one the game's config asks for, so that it knows whether
+    // it needs FlatLaf before loading its own copy of the config.
+    private static String uiRenderer = System.getProperty("mlsipc.renderer", "swing");
+    private static int logLevel = AsyncLogger.INFO;
 
     public static void startLoadingScreen() {
-        if (IS_HEADLESS) {
-            println("Mod Loading Screen is on a headless environment. Only some logging will be performed.");
-            return;
-        }
+        final StartupPhases phases = new StartupPhases();
+        Runtime.getRuntime().addShutdownHook(new Thread(
+            () -> logger.flush(LOG_FLUSH_TIMEOUT_MS), "LoadingScreenLogFlush"
+        ));
+        // Steps that don't depend on each other or on the config run on a few threads of their own, while the config is
+        // loaded on this one
+        final ExecutorService executor = Executors.newFixedThreadPool(STARTUP_THREADS, r -> {
+            final Thread thread = new Thread(r, "LoadingScreenStartup");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            Files.createDirectories(CONFIG_DIR);
-        } catch (IOException e) {
-            println("Failed to create config dir", e);
+            final Future<String> gameNameAndVersion = IS_HEADLESS ? null : executor.submit(
+                () -> phases.call("game name", ActualLoadingScreen::getGameNameAndVersion)
+            );
+            final Future<Path> flatlafPath = ENABLE_IPC ? executor.submit(
+                () -> phases.call("flatlaf", ActualLoadingScreen::extractFlatlaf)
+            ) : null;
+            // Without IPC, whether FlatLaf is needed isn't known until the config is loaded
+            final Future<?> lookAndFeel = IS_IPC_CLIENT && !IS_HEADLESS && uiRenderer.equals("swing") ? executor.submit(
+                () -> phases.run("look and feel", ActualLoadingScreen::setupLookAndFeel)
+            ) : null;
+            final Future<Image> icon = !IS_HEADLESS && !ENABLE_IPC ? executor.submit(
+                () -> phases.call("icon", ActualLoadingScreen::loadIcon)
+            ) : null;
+
+            phases.run("config", () -> {
+                try {
+                    Files.createDirectories(CONFIG_DIR);
+                } catch (IOException e) {
+                    println("Failed to create config dir", e);
+                }
+                loadConfig();
+            });
+
+            if (!IS_IPC_CLIENT && enableStartupTrace) {
+                startupTrace = new StartupTrace();
+            }
+            // Not needed until the first entrypoint, so it's only waited for once the loading screen is up
+            final Future<LaunchHistory> history = !IS_IPC_CLIENT && (enableProgressEstimates || enableLaunchLog)
+                ? executor.submit(() -> phases.call("launch history", ActualLoadingScreen::loadLaunchHistory))
+                : null;
+
+            if (IS_HEADLESS) {
+                println("Mod Loading Screen is on a headless environment. Only some logging will be performed.");
+                startMemoryMonitor();
+                startHeadlessProgress();
+            } else if (ENABLE_IPC) {
+                final Future<SharedMemoryRing> ring = ipcTransport.equals("shm")
+                    ? executor.submit(() -> phases.call("shared memory", ActualLoadingScreen::createSharedMemoryRing))
+                    : null;
+                if (startIpcClient(phases, join(gameNameAndVersion), join(flatlafPath), join(ring))) {
+                    startMemoryMonitor();
+                }
+            } else if (uiRenderer.equals("java2d")) {
+                openJava2dRenderer(phases, join(gameNameAndVersion), join(icon));
+            } else {
+                if (lookAndFeel != null) {
+                    join(lookAndFeel);
+                } else {
+                    phases.run("look and feel", ActualLoadingScreen::setupLookAndFeel);
+                }
+                openDialog(phases, join(gameNameAndVersion), join(icon));
+            }
+
+            if (history != null) {
+                launchHistory = join(history);
+            }
+        } catch (ExecutionException e) {
+            println("Failed to start loading screen. Aborting.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
         }
+        println(
+            "Started loading screen in " + phases.elapsedNanos() / 1000L + " \u00b5s (" + phases + ")"
+        );
+    }
 
-        println("Opening loading screen");
+    @Nullable
+    private static <T> T join(@Nullable Future<T> future) throws ExecutionException, InterruptedException {
+        return future != null ? future.get() : null;
+    }
 
-        final String gameNameAndVersion = IS_IPC_CLIENT
+    private static String getGameNameAndVersion() {
+        return IS_IPC_CLIENT
             ? System.getProperty("mlsipc.game")
             : FabricLoader.getInstance()
                 .getAllMods()
@@ -66,88 +245,148 @@ public class ActualLoadingScreen {
                 .findFirst()
                 .map(m -> m.getMetadata().getName() + ' ' + m.getMetadata().getVersion())
                 .orElse("Unknown Game");
+    }
 
-        loadConfig();
+    @Nullable
+    private static LaunchHistory loadLaunchHistory() {
+        try {
+            return LaunchHistory.load(CONFIG_DIR.resolve("launch-history.bin"));
+        } catch (Exception e) {
+            println("Failed to load launch history", e);
+            return null;
+        }
+    }
 
-        if (ENABLE_IPC) {
-            final Path runDir = FabricLoader.getInstance().getGameDir().resolve(".cache/mod-loading-screen");
-            final Path flatlafDestPath = runDir.resolve("flatlaf.jar");
-            try {
-                Files.createDirectories(flatlafDestPath.getParent());
-                Files.copy(
-                    FabricLoader.getInstance()
-                        .getModContainer("mod-loading-screen")
-                        .orElseThrow(AssertionError::new)
-                        .getRootPaths().get(0)
-                        .resolve("META-INF/jars/flatlaf-3.0.jar"),
-                    flatlafDestPath, StandardCopyOption.REPLACE_EXISTING
-                );
-                println("Extracted flatlaf.jar");
-                ipcOut = new DataOutputStream(
-                    new ProcessBuilder(
-                        System.getProperty("java.home") + "/bin/java",
-                        "-Dmlsipc.present=true",
-                        "-Dmlsipc.quilt=" + RUNNING_ON_QUILT,
-                        "-Dmlsipc.game=" + gameNameAndVersion,
-                        "-Dmlsipc.config=" + CONFIG_DIR,
-                        "-cp", String.join(
-                            File.pathSeparator,
-                            FabricLoader.getInstance()
-                                .getModContainer("mod-loading-screen")
-                                .orElseThrow(AssertionError::new)
-                                .getOrigin()
-                                .getPaths().get(0)
-                                .toString(),
-                            flatlafDestPath.toString()
-                        ),
-                        ACTUAL_LOADING_SCREEN.replace('/', '.')
-                    )
-                        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
-                        .redirectError(ProcessBuilder.Redirect.INHERIT)
-                        .redirectInput(ProcessBuilder.Redirect.PIPE)
-                        .directory(runDir.toFile())
-                        .start()
-                        .getOutputStream()
-                );
-            } catch (Exception e) {
-                println("Failed to setup IPC client. Aborting.", e);
-                return;
+    @Nullable
+    private static Image loadIcon() {
+        try {
+            return ImageIO.read(ClassLoader.getSystemResource("assets/mod-loading-screen/icon.png"));
+        } catch (Exception e) {
+            println("Failed to load icon.png", e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Path extractFlatlaf() {
+        try {
+            return extractFlatlaf0();
+        } catch (Exception e) {
+            println("Failed to extract FlatLaf", e);
+            return null;
+        }
+    }
+
+    private static Path extractFlatlaf0() throws IOException {
+        final long extractStart = System.nanoTime();
+        final Path flatlafSourcePath = FabricLoader.getInstance()
+            .getModContainer("mod-loading-screen")
+            .orElseThrow(AssertionError::new)
+            .getRootPaths().get(0)
+            .resolve("META-INF/jars/flatlaf-3.0.jar");
+        final Path flatlafDestPath = ArtifactCache.path(CACHE_DIR, flatlafSourcePath, "flatlaf", ".jar");
+        final boolean extracted = ArtifactCache.extract(flatlafSourcePath, flatlafDestPath, "flatlaf", ".jar");
+        println(
+            (extracted ? "Extracted " : "Reused cached ") + flatlafDestPath.getFileName() + " in " +
+                (System.nanoTime() - extractStart) / 1000L + " \u00b5s" +
+                (extracted ? "" : " (skipped copying " + Files.size(flatlafDestPath) / 1024L + " KiB)")
+        );
+        return flatlafDestPath;
+    }
+
+    /**
+     * @return Whether the IPC client was started
+     */
+    private static boolean startIpcClient(
+        StartupPhases phases, String gameNameAndVersion, @Nullable Path flatlafDestPath, @Nullable SharedMemoryRing ring
+    ) {
+        println("Opening loading screen");
+        try {
+            // The Java2D renderer doesn't need FlatLaf, so it's left off the classpath
+            final boolean swing = uiRenderer.equals("swing");
+            if (swing && flatlafDestPath == null) {
+                throw new IOException("FlatLaf wasn't extracted");
             }
-            startMemoryThread();
-            return;
+            final Path modJarPath = FabricLoader.getInstance()
+                .getModContainer("mod-loading-screen")
+                .orElseThrow(AssertionError::new)
+                .getOrigin()
+                .getPaths().get(0);
+
+            final List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + "/bin/java");
+            if (enableClassDataSharing && Files.isRegularFile(modJarPath)) {
+                try {
+                    command.addAll(swing
+                        ? ClassDataSharing.jvmArgs(CACHE_DIR, modJarPath, flatlafDestPath)
+                        : ClassDataSharing.jvmArgs(CACHE_DIR, modJarPath)
+                    );
+                } catch (Exception e) {
+                    println("Failed to set up class data sharing for the IPC client", e);
+                }
+            }
+            command.add("-Dmlsipc.present=true");
+            command.add("-Dmlsipc.quilt=" + RUNNING_ON_QUILT);
+            command.add("-Dmlsipc.game=" + gameNameAndVersion);
+            command.add("-Dmlsipc.config=" + CONFIG_DIR);
+            command.add("-Dmlsipc.cache=" + CACHE_DIR);
+            command.add("-Dmlsipc.renderer=" + uiRenderer);
+            if (ring != null) {
+                command.add("-Dmlsipc.ring=" + ring.path);
+            }
+            command.add("-cp");
+            command.add(swing ? modJarPath + File.pathSeparator + flatlafDestPath : modJarPath.toString());
+            command.add(ACTUAL_LOADING_SCREEN.replace('/', '.'));
+
+            final Process process = phases.call("spawn", () -> new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .redirectInput(ProcessBuilder.Redirect.PIPE)
+                .directory(CACHE_DIR.toFile())
+                .start()
+            );
+            // With shared memory, the pipe is only closed to tell the IPC client that the game is done
+            final IpcWriter ipcWriter = new IpcWriter(
+                ring != null
+                    ? ring.output(process::isAlive, process.getOutputStream())
+                    : process.getOutputStream(),
+                IPC_PROTOCOL_VERSION
+            );
+            ipcOut = new AsyncIpcWriter(
+                ipcWriter, IPC_FLUSH_INTERVAL_MS, ActualLoadingScreen::ipcFailed,
+                ActualLoadingScreen::sendCustomBarProgress
+            );
+            return true;
+        } catch (Exception e) {
+            println("Failed to setup IPC client. Aborting.", e);
+            return false;
         }
+    }
 
+    static void setupLookAndFeel() {
         FlatDarkLaf.setup();
         UIManager.getDefaults().put("ProgressBar.horizontalSize", new Dimension(146, 18));
         UIManager.getDefaults().put("ProgressBar.font", UIManager.getFont("ProgressBar.font").deriveFont(18f));
         UIManager.getDefaults().put("ProgressBar.selectionForeground", new Color(255, 255, 255));
+    }
+
+    private static void openDialog(StartupPhases phases, String gameNameAndVersion, @Nullable Image icon) {
+        println("Opening loading screen");
+        final long dialogStart = System.nanoTime();
 
         dialog = new JFrame();
         dialog.setTitle("Loading " + gameNameAndVersion);
         dialog.setResizable(false);
-
-        try {
-            dialog.setIconImage(ImageIO.read(
-                ClassLoader.getSystemResource("assets/mod-loading-screen/icon.png"))
-            );
-        } catch (Exception e) {
-            println("Failed to load icon.png", e);
+        if (icon != null) {
+            dialog.setIconImage(icon);
         }
 
-        ImageIcon icon;
-        try {
-            final Path backgroundPath = CONFIG_DIR.resolve("background.png");
-            icon = new ImageIcon(
-                Files.exists(backgroundPath)
-                    ? backgroundPath.toUri().toURL()
-                    : ClassLoader.getSystemResource("assets/mod-loading-screen/" + (RUNNING_ON_QUILT ? "quilt-banner.png" : "xpixel.png"))
-            );
-            icon.setImage(icon.getImage().getScaledInstance(960, 540, Image.SCALE_SMOOTH));
-        } catch (Exception e) {
-            println("Failed to load background.png", e);
-            icon = null;
-        }
-        label = new JLabel(icon);
+        // The background is decoded in the background, with a solid placeholder of the same size shown until then
+        label = new JLabel();
+        label.setPreferredSize(new Dimension(BACKGROUND_WIDTH, BACKGROUND_HEIGHT));
+        label.setOpaque(true);
+        label.setBackground(UIManager.getColor("Panel.background"));
+        startBackgroundThread();
         final BoxLayout layout = new BoxLayout(label, BoxLayout.Y_AXIS);
         label.setLayout(layout);
         label.add(Box.createVerticalGlue());
@@ -160,11 +399,73 @@ public class ActualLoadingScreen {
         }
 
         dialog.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                logFirstFrame(phases);
+            }
+        });
         dialog.pack();
         dialog.setLocationRelativeTo(null);
         dialog.setVisible(true);
+        phases.record("window", dialogStart);
+
+        uiTimer = new Timer(1000 / uiFrameRate, e -> applyUiState());
+        uiTimer.start();
 
-        startMemoryThread();
+        startMemoryMonitor();
+    }
+
+    private static void openJava2dRenderer(StartupPhases phases, String gameNameAndVersion, @Nullable Image icon) {
+        println("Opening loading screen");
+        final long windowStart = System.nanoTime();
+        java2dRenderer = Java2dRenderer.open(
+            "Loading " + gameNameAndVersion, icon, BACKGROUND_WIDTH, BACKGROUND_HEIGHT, uiFrameRate,
+            ActualLoadingScreen::applyUiState, () -> logFirstFrame(phases), ActualLoadingScreen::println
+        );
+        phases.record("window", windowStart);
+        startBackgroundThread();
+        startMemoryMonitor();
+    }
+
+    private static void logFirstFrame(StartupPhases phases) {
+        println(
+            "Time to first frame: " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms since launch, " +
+                TimeUnit.NANOSECONDS.toMillis(phases.elapsedNanos()) + " ms since the loading screen started" +
+                " (renderer: " + uiRenderer +
+                (IS_IPC_CLIENT
+                    ? ", class data sharing: " +
+                        System.getProperty(ClassDataSharing.MODE_PROPERTY, ClassDataSharing.MODE_OFF)
+                    : "") + ")"
+        );
+    }
+
+    private static void startBackgroundThread() {
+        final Thread backgroundThread = new Thread(() -> {
+            try {
+                final Path backgroundPath = CONFIG_DIR.resolve("background.png");
+                final BufferedImage background = BackgroundImageCache.load(
+                    Files.exists(backgroundPath)
+                        ? Files.newInputStream(backgroundPath)
+                        : ClassLoader.getSystemResourceAsStream("assets/mod-loading-screen/" + (RUNNING_ON_QUILT ? "quilt-banner.png" : "xpixel.png")),
+                    CACHE_DIR, BACKGROUND_WIDTH, BACKGROUND_HEIGHT, ActualLoadingScreen::println
+                );
+                final Java2dRenderer renderer = java2dRenderer;
+                if (renderer != null) {
+                    renderer.setBackground(background);
+                    return;
+                }
+                SwingUtilities.invokeLater(() -> {
+                    if (label != null) {
+                        label.setIcon(new ImageIcon(background));
+                    }
+                });
+            } catch (Exception e) {
+                println("Failed to load background.png", e);
+            }
+        }, "BackgroundLoader");
+        backgroundThread.setDaemon(true);
+        backgroundThread.start();
     }
 
     private static void loadConfig() {
@@ -178,15 +479,74 @@ public class ActualLoadingScreen {
             println("Failed to load config", e);
         }
 
-        if (configProperties.getProperty("enableMemoryDisplay") != null) {
-            enableMemoryDisplay = Boolean.parseBoolean(configProperties.getProperty("enableMemoryDisplay"));
+        enableMemoryDisplay = readBoolean(configProperties, "enableMemoryDisplay", enableMemoryDisplay);
+        memoryUpdateThreshold = readInt(
+            configProperties, "memoryUpdateThreshold", memoryUpdateThreshold, 0, Integer.MAX_VALUE
+        );
+        enableStartupTrace = readBoolean(configProperties, "enableStartupTrace", enableStartupTrace);
+        enableClassDataSharing = readBoolean(configProperties, "enableClassDataSharing", enableClassDataSharing);
+        enableProgressEstimates = readBoolean(configProperties, "enableProgressEstimates", enableProgressEstimates);
+        enableLaunchLog = readBoolean(configProperties, "enableLaunchLog", enableLaunchLog);
+        regressionThresholdPercent = readInt(
+            configProperties, "regressionThresholdPercent", regressionThresholdPercent, 0, Integer.MAX_VALUE
+        );
+        enableClassLoadTracking = readBoolean(configProperties, "enableClassLoadTracking", enableClassLoadTracking);
+        enableMixinTracking = readBoolean(configProperties, "enableMixinTracking", enableMixinTracking);
+        enableEntrypointProxies = readBoolean(configProperties, "enableEntrypointProxies", enableEntrypointProxies);
+        enableParallelEntrypoints = readBoolean(
+            configProperties, "enableParallelEntrypoints", enableParallelEntrypoints
+        );
+        for (final String modId : readString(configProperties, "parallelEntrypointMods", "").split(",")) {
+            if (!modId.trim().isEmpty()) {
+                parallelEntrypointMods.add(modId.trim());
+            }
         }
+        headlessOutput = readChoice(configProperties, "headlessOutput", headlessOutput, "progress", "verbose", "quiet");
+        headlessSummaryInterval = readInt(
+            configProperties, "headlessSummaryInterval", headlessSummaryInterval, 1, Integer.MAX_VALUE
+        );
+        headlessJsonOutput = readString(configProperties, "headlessJsonOutput", headlessJsonOutput);
+        ipcTransport = readChoice(configProperties, "ipcTransport", ipcTransport, "pipe", "shm");
+        uiRenderer = readChoice(configProperties, "renderer", uiRenderer, "swing", "java2d");
+        final String logLevelName = readString(configProperties, "logLevel", null);
+        if (logLevelName != null) {
+            final int value = AsyncLogger.parseLevel(logLevelName);
+            if (value >= 0) {
+                logLevel = value;
+            } else {
+                println("Invalid logLevel " + logLevelName + ". Expected debug, info, warn, error, or off.");
+            }
+        }
+        logger.setLevel(logLevel);
+        uiFrameRate = readInt(configProperties, "uiFrameRate", uiFrameRate, 1, 1000);
 
-        configProperties.clear();
-        configProperties.setProperty("enableMemoryDisplay", Boolean.toString(enableMemoryDisplay));
+        final Properties newProperties = new Properties();
+        newProperties.setProperty("enableMemoryDisplay", Boolean.toString(enableMemoryDisplay));
+        newProperties.setProperty("memoryUpdateThreshold", Integer.toString(memoryUpdateThreshold));
+        newProperties.setProperty("enableStartupTrace", Boolean.toString(enableStartupTrace));
+        newProperties.setProperty("uiFrameRate", Integer.toString(uiFrameRate));
+        newProperties.setProperty("enableClassDataSharing", Boolean.toString(enableClassDataSharing));
+        newProperties.setProperty("enableProgressEstimates", Boolean.toString(enableProgressEstimates));
+        newProperties.setProperty("enableLaunchLog", Boolean.toString(enableLaunchLog));
+        newProperties.setProperty("regressionThresholdPercent", Integer.toString(regressionThresholdPercent));
+        newProperties.setProperty("enableClassLoadTracking", Boolean.toString(enableClassLoadTracking));
+        newProperties.setProperty("enableMixinTracking", Boolean.toString(enableMixinTracking));
+        newProperties.setProperty("enableEntrypointProxies", Boolean.toString(enableEntrypointProxies));
+        newProperties.setProperty("enableParallelEntrypoints", Boolean.toString(enableParallelEntrypoints));
+        newProperties.setProperty("parallelEntrypointMods", String.join(",", parallelEntrypointMods));
+        newProperties.setProperty("headlessOutput", headlessOutput);
+        newProperties.setProperty("headlessSummaryInterval", Integer.toString(headlessSummaryInterval));
+        newProperties.setProperty("headlessJsonOutput", headlessJsonOutput);
+        newProperties.setProperty("ipcTransport", ipcTransport);
+        newProperties.setProperty("logLevel", AsyncLogger.getLevelName(logLevel));
+        newProperties.setProperty("renderer", uiRenderer);
 
+        // Rewritten only to add new options or normalize invalid ones, so that most launches don't touch the disk
+        if (newProperties.equals(configProperties)) {
+            return;
+        }
         try (OutputStream os = Files.newOutputStream(configFile)) {
-            configProperties.store(os,
+            newProperties.store(os,
                 "To use a custom background image, create a file named background.png in this folder. The recommended size is 960x540."
             );
         } catch (Exception e) {
@@ -194,75 +554,504 @@ public class ActualLoadingScreen {
         }
     }
 
-    private static void startMemoryThread() {
-        if (IS_IPC_CLIENT || !enableMemoryDisplay) return;
-        updateMemoryUsage();
-        memoryThread = new Thread(() -> {
-            while (true) {
+    // These config readers return the default when the option is missing or invalid, and report invalid ones. The
+    // config is then rewritten with the default in place of the invalid value.
+    private static String readString(Properties properties, String key, @Nullable String defaultValue) {
+        final String value = properties.getProperty(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    private static boolean readBoolean(Properties properties, String key, boolean defaultValue) {
+        return readChoice(properties, key, Boolean.toString(defaultValue), "true", "false").equals("true");
+    }
+
+    private static int readInt(Properties properties, String key, int defaultValue, int min, int max) {
+        final String value = readString(properties, key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(min, Math.min(max, Integer.parseInt(value)));
+        } catch (NumberFormatException e) {
+            println("Invalid " + key + " " + value + ". Expected a whole number.");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads an option that must be one of {@code choices}, ignoring case.
+     */
+    private static String readChoice(Properties properties, String key, String defaultValue, String... choices) {
+        final String value = readString(properties, key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        final String lowerValue = value.toLowerCase(Locale.ROOT);
+        for (final String choice : choices) {
+            if (choice.equals(lowerValue)) {
+                return choice;
+            }
+        }
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < choices.length; i++) {
+            if (i > 0) {
+                expected.append(choices.length > 2 ? ", " : " ");
+                if (i == choices.length - 1) {
+                    expected.append("or ");
+                }
+            }
+            expected.append(choices[i]);
+        }
+        println("Invalid " + key + " " + value + ". Expected " + expected + '.');
+        return defaultValue;
+    }
+
+    @Nullable
+    private static SharedMemoryRing createSharedMemoryRing() {
+        final String unavailableReason = SharedMemoryRing.getUnavailableReason();
+        if (unavailableReason != null) {
+            println("Shared memory IPC isn't available, so the pipe is used instead: " + unavailableReason);
+            return null;
+        }
+        // Rings left by previous launches that crashed before deleting them. Recent ones may belong to another instance
+        // that's still starting, and Linux would let them be deleted before its client opens them.
+        final long staleBefore = System.currentTimeMillis() - STALE_RING_AGE_MS;
+        try (DirectoryStream<Path> oldRings = Files.newDirectoryStream(CACHE_DIR, "ipc-ring-*.bin")) {
+            for (final Path oldRing : oldRings) {
                 try {
-                    //noinspection BusyWait
-                    Thread.sleep(100L);
-                } catch (InterruptedException e) {
-                    break;
+                    if (Files.getLastModifiedTime(oldRing).toMillis() < staleBefore) {
+                        Files.deleteIfExists(oldRing);
+                    }
+                } catch (IOException ignored) {
                 }
-                updateMemoryUsage();
             }
-        }, "MemoryUsageListener");
-        memoryThread.setDaemon(true);
-        memoryThread.start();
+        } catch (IOException ignored) {
+        }
+        try {
+            final Path path = Files.createTempFile(CACHE_DIR, "ipc-ring-", ".bin");
+            path.toFile().deleteOnExit();
+            return SharedMemoryRing.create(path, SharedMemoryRing.DEFAULT_CAPACITY);
+        } catch (Exception e) {
+            println("Failed to set up shared memory IPC. Falling back to the pipe.", e);
+            return null;
+        }
     }
 
-    public static void beforeEntrypointType(String name, Class<?> type) {
-        beforeEntrypointType(
-            name,
-            type.getSimpleName(),
-            FabricLoader.getInstance().getEntrypointContainers(name, type).size()
+    private static void startHeadlessProgress() {
+        quietEntrypoints = !headlessOutput.equals("verbose");
+        // Asked for explicitly, so it isn't hidden by the default log level
+        if (!quietEntrypoints) {
+            entrypointLogLevel = AsyncLogger.INFO;
+        }
+        PrintStream json = null;
+        // Where this mod's own lines go. JSON written to stdout is kept apart from them, so it stays machine-readable.
+        PrintStream console = System.out;
+        if (headlessJsonOutput.equals("-")) {
+            json = System.out;
+            console = System.err;
+            logger.setOut(console);
+        } else if (!headlessJsonOutput.isEmpty()) {
+            try {
+                json = new PrintStream(Files.newOutputStream(Paths.get(headlessJsonOutput)), false, "UTF-8");
+            } catch (IOException e) {
+                println("Failed to open " + headlessJsonOutput + " for JSON progress", e);
+            }
+        }
+        final boolean statusLine = headlessOutput.equals("progress");
+        if (!statusLine && json == null) return;
+        final HeadlessProgress progress = new HeadlessProgress(
+            progressRegistry, console, LOG_PREFIX,
+            statusLine, TimeUnit.SECONDS.toMillis(headlessSummaryInterval), json
         );
+        if (statusLine) {
+            logger.setConsoleGuard(progress::printAbove);
+        }
+        addListener(progress);
+    }
+
+    private static void startMemoryMonitor() {
+        if (IS_IPC_CLIENT || !enableMemoryDisplay) return;
+        memoryMonitor = new MemoryMonitor(memoryUpdateThreshold * 1024L * 1024L, ActualLoadingScreen::updateMemoryUsage);
+    }
+
+    /**
+     * Called by {@link ModLoadingScreen#init}, on the agent thread, once the entrypoint hooks are in place and the
+     * loading screen has started. Returns whether class loading is being tracked, in which case the class loader should be instrumented to call {@link #beforeLoadClass} and
+     * {@link #afterLoadClass}.
+     */
+    public static boolean startClassLoadProbe(Instrumentation instrumentation) {
+        if (IS_IPC_CLIENT || !enableClassLoadTracking) {
+            return false;
+        }
+        final Map<String, List<Path>> modPaths = new LinkedHashMap<>();
+        for (final ModContainer mod : FabricLoader.getInstance().getAllMods()) {
+            final List<Path> paths = new ArrayList<>(mod.getRootPaths());
+            try {
+                paths.addAll(mod.getOrigin().getPaths());
+            } catch (UnsupportedOperationException ignored) {
+                // Nested mods don't have a path of their own
+            }
+            modPaths.put(mod.getMetadata().getId(), paths);
+        }
+        final ClassLoadProbe probe = new ClassLoadProbe(modPaths);
+        synchronized (PROBES_LOCK) {
+            if (probesClosed) {
+                return false;
+            }
+            ActualLoadingScreen.instrumentation = instrumentation;
+            classLoadProbe = probe;
+            ClassLoadProbe.instance = probe;
+            instrumentation.addTransformer(probe);
+            startStatusThread();
+        }
+        return true;
+    }
+
+    /**
+     * Called by {@link ModLoadingScreen#init} when the agent couldn't be attached. Returns whether entrypoints should be
+     * tracked with {@link EntrypointProxies}, which other mods can notice, so it has to be enabled in the config.
+     */
+    public static boolean useEntrypointProxies() {
+        return !IS_IPC_CLIENT && enableEntrypointProxies;
+    }
+
+    /**
+     * Called by {@link ModLoadingScreen#init}, on the agent thread, once the entrypoint hooks are in place and the
+     * loading screen has started. Returns whether Mixin is being tracked, in which case the class loader should be instrumented to call {@link #beforeMixinTransform} and
+     * {@link #afterMixinTransform}.
+     */
+    public static boolean startMixinProbe() {
+        if (IS_IPC_CLIENT || !enableMixinTracking) {
+            return false;
+        }
+        final MixinProbe probe = new MixinProbe();
+        synchronized (PROBES_LOCK) {
+            if (probesClosed) {
+                return false;
+            }
+            mixinProbe = probe;
+            MixinProbe.instance = probe;
+            startStatusThread();
+        }
+        return true;
+    }
+
+    // Samples the probes for the IPC client. Without IPC, applyUiState samples them directly.
+    private static void startStatusThread() {
+        if (!ENABLE_IPC || statusThread != null) return;
+        statusThread = new Thread(() -> {
+            long[] lastClassLoading = null;
+            long[] lastMixinStats = null;
+            while (classLoadProbe != null || mixinProbe != null) {
+                final ClassLoadProbe classProbe = classLoadProbe;
+                if (classProbe != null) {
+                    final long[] sample = classProbe.sample();
+                    if (!Arrays.equals(sample, lastClassLoading)) {
+                        lastClassLoading = sample;
+                        sendIpc(
+                            IpcProtocol.CLASS_LOADING,
+                            sample[ClassLoadProbe.CLASSES], sample[ClassLoadProbe.BYTES],
+                            sample[ClassLoadProbe.LOAD_MILLIS], sample[ClassLoadProbe.CLASSES_PER_SECOND]
+                        );
+                    }
+                }
+                final MixinProbe mixins = mixinProbe;
+                if (mixins != null) {
+                    final long[] sample = mixins.sample();
+                    if (!Arrays.equals(sample, lastMixinStats)) {
+                        lastMixinStats = sample;
+                        sendIpc(IpcProtocol.MIXIN_STATS, sample[MixinProbe.CLASSES], sample[MixinProbe.MILLIS]);
+                    }
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(STATUS_INTERVAL_MS));
+            }
+        }, "StatusSampler");
+        statusThread.setDaemon(true);
+        statusThread.start();
+    }
+
+    public static void beforeMixinTransform(@Nullable String target) {
+        MixinProbe.enter(target);
+    }
+
+    public static void afterMixinTransform() {
+        MixinProbe.exit();
+    }
+
+    public static void beforeLoadClass() {
+        ClassLoadProbe.enterLoad();
+    }
+
+    public static void afterLoadClass() {
+        ClassLoadProbe.exitLoad();
+    }
+
+    public static void beforeEntrypointType(String name, Class<?> type) {
+        final List<? extends EntrypointContainer<?>> containers =
+            FabricLoader.getInstance().getEntrypointContainers(name, type);
+        beforeEntrypointType(name, type.getSimpleName(), containers.size());
+        final Map<String, Long> expected = estimateEntrypointType(name, containers);
+        if (expected != null) {
+            expectedDurations.put(name, new ConcurrentHashMap<>(expected));
+        }
+    }
+
+    /**
+     * Called at the start of {@code EntrypointUtils.invoke0}. Everything the hooks need about each entrypoint is looked
+     * up here, so that the hooks for the entrypoints themselves only need the returned id.
+     *
+     * @return The id to pass to {@link #beforeSingleEntrypoint(int)} and {@link #afterEntrypointType(int)}
+     */
+    public static int beginEntrypointType(String name, Class<?> type) {
+        final List<? extends EntrypointContainer<?>> containers =
+            FabricLoader.getInstance().getEntrypointContainers(name, type);
+        final String typeType = type.getSimpleName();
+        beforeEntrypointType(name, typeType, containers.size());
+
+        final int[] mods = new int[containers.size()];
+        for (int i = 0; i < mods.length; i++) {
+            final ModMetadata metadata = containers.get(i).getProvider().getMetadata();
+            mods[i] = entrypointTable.addMod(
+                metadata.getId(), metadata.getName(), metadata.getVersion().getFriendlyString()
+            );
+        }
+        final Map<String, Long> expected = estimateEntrypointType(name, containers);
+        long[] expectedNanos = null;
+        if (expected != null) {
+            expectedNanos = new long[mods.length];
+            for (int i = 0; i < mods.length; i++) {
+                final Long nanos = expected.remove(entrypointTable.getModId(mods[i]));
+                expectedNanos[i] = nanos != null ? nanos : 0L;
+            }
+        }
+        if (startupTrace != null) {
+            startupTrace.reserve(mods.length);
+        }
+        if (launchHistory != null) {
+            launchHistory.reserve(mods.length);
+        }
+        return entrypointTable.addType(new EntrypointTable.Type(
+            name, typeType, progressRegistry.get(name), mods, expectedNanos
+        ));
     }
 
     private static void beforeEntrypointType(String name, String type, int entrypointCount) {
-        progress.put(name, 0);
+        progressRegistry.open(name, type, entrypointCount);
+        if (startupTrace != null) {
+            startupTrace.beginType(name, type);
+        }
 
-        if (sendIpc(0, name, type, Integer.toString(entrypointCount))) return;
+        if (sendIpc(IpcProtocol.BEFORE_ENTRYPOINT_TYPE, name, type, entrypointCount) || quietEntrypoints) return;
 
         println("Preparing loading screen for entrypoint '" + name + "'");
-        if (dialog == null) return;
+    }
 
-        final JProgressBar progressBar = new JProgressBar(0, entrypointCount);
-        progressBar.setStringPainted(true);
-        setLabel(progressBar, name, type, null);
-        progressBars.put(name, progressBar);
-        label.add(progressBar, BorderLayout.SOUTH);
-        dialog.pack();
+    /**
+     * Mods without a history are expected to take as long as the average of the ones with a history.
+     *
+     * @return The expected duration of each mod's entrypoints, by mod id, or {@code null} if there's no estimate
+     */
+    @Nullable
+    private static Map<String, Long> estimateEntrypointType(
+        String name, List<? extends EntrypointContainer<?>> containers
+    ) {
+        if (launchHistory == null || !enableProgressEstimates) return null;
+        final Map<String, Long> expected = new HashMap<>();
+        final List<String> unknown = new ArrayList<>();
+        long knownTotal = 0;
+        for (final EntrypointContainer<?> container : containers) {
+            final ModMetadata metadata = container.getProvider().getMetadata();
+            // A mod's history covers all of its entrypoints of a type, so it's only counted once
+            if (expected.containsKey(metadata.getId()) || unknown.contains(metadata.getId())) continue;
+            final long nanos = launchHistory.getExpected(
+                name, metadata.getId(), metadata.getVersion().getFriendlyString()
+            );
+            if (nanos >= 0) {
+                expected.put(metadata.getId(), nanos);
+                knownTotal += nanos;
+            } else {
+                unknown.add(metadata.getId());
+            }
+        }
+        if (expected.isEmpty()) return null;
+
+        final long fallback = knownTotal / expected.size();
+        for (final String modId : unknown) {
+            expected.put(modId, fallback);
+        }
+        final long total = knownTotal + fallback * unknown.size();
+        final ProgressRegistry.Bar bar = progressRegistry.get(name);
+        if (bar != null) {
+            bar.setExpectedTotal(total);
+        }
+        sendIpc(IpcProtocol.TYPE_ESTIMATE, name, total / 1000L);
+        return expected;
+    }
+
+    /**
+     * Called before each entrypoint invoked by {@code EntrypointUtils.invoke0}, in order. Allocates nothing unless
+     * entrypoints are logged.
+     *
+     * @param typeId The id returned by {@link #beginEntrypointType}
+     */
+    public static void beforeSingleEntrypoint(int typeId) {
+        final EntrypointTable.Type type = entrypointTable.getType(typeId);
+        final int position = type.position++;
+        // Only if the loader's list of entrypoints changed since the invocation started
+        if (position >= type.mods.length) return;
+        final int mod = type.mods[position];
+        beforeSingleEntrypoint(
+            type.name, type.typeType,
+            entrypointTable.getModId(mod), entrypointTable.getModName(mod), entrypointTable.getModVersion(mod),
+            type.expectedNanos != null ? type.expectedNanos[position] : -1L, type.bar
+        );
     }
 
     public static void beforeSingleEntrypoint(String typeName, String typeType, String modId, String modName) {
-        final Integer oldProgress = progress.get(typeName);
-        progress.put(typeName, oldProgress != null ? oldProgress + 1 : 1);
+        long expectedNanos = -1L;
+        String version = "";
+        if (launchHistory != null) {
+            version = FabricLoader.getInstance()
+                .getModContainer(modId)
+                .map(c -> c.getMetadata().getVersion().getFriendlyString())
+                .orElse("");
+            final Map<String, Long> expected = expectedDurations.get(typeName);
+            if (expected != null) {
+                final Long nanos = expected.remove(modId);
+                expectedNanos = nanos != null ? nanos : 0L;
+            }
+        }
+        beforeSingleEntrypoint(
+            typeName, typeType, modId, modName, version, expectedNanos, progressRegistry.get(typeName)
+        );
+    }
+
+    /**
+     * @param expectedNanos How long the entrypoint is expected to take, or {@code -1} if there's no estimate
+     */
+    private static void beforeSingleEntrypoint(
+        String typeName, String typeType, String modId, String modName, String version, long expectedNanos,
+        @Nullable ProgressRegistry.Bar bar
+    ) {
+        if (bar != null) {
+            bar.setDetail(modName);
+            bar.increment();
+        }
+        if (startupTrace != null) {
+            startupTrace.beginMod(typeName, typeType, modId, modName);
+        }
+        if (launchHistory != null) {
+            launchHistory.begin(typeName, modId, version);
+            if (expectedNanos >= 0) {
+                if (bar != null) {
+                    bar.beginEntrypoint(expectedNanos);
+                }
+                sendIpc(IpcProtocol.ENTRYPOINT_ESTIMATE, typeName, expectedNanos / 1000L);
+            }
+        }
 
-        if (sendIpc(1, typeName, typeType, modId, modName)) return;
+        if (sendIpc(IpcProtocol.BEFORE_SINGLE_ENTRYPOINT, typeName, typeType, modId, modName) || quietEntrypoints) return;
 
-        println("Calling entrypoint container for mod '" + modId + "'");
-        if (dialog == null) return;
+        if (logger.isEnabled(entrypointLogLevel)) {
+            logger.log(entrypointLogLevel, "Calling entrypoint container for mod '" + modId + "'", null);
+        }
+    }
 
-        final JProgressBar progressBar = progressBars.get(typeName);
-        if (progressBar == null) return;
-        progressBar.setValue(progress.get(typeName));
-        setLabel(progressBar, typeName, typeType, modName);
+    private static void afterSingleEntrypoint() {
+        if (startupTrace != null) {
+            startupTrace.endMod();
+        }
+        if (launchHistory != null) {
+            launchHistory.end();
+        }
+    }
+
+    /**
+     * @param typeId The id returned by {@link #beginEntrypointType}
+     */
+    public static void afterEntrypointType(int typeId) {
+        afterEntrypointType(entrypointTable.getType(typeId).name);
     }
 
     public static void afterEntrypointType(String name) {
-        progress.remove(name);
+        progressRegistry.close(name);
+        if (startupTrace != null) {
+            startupTrace.endType(name);
+        }
+        if (launchHistory != null) {
+            launchHistory.end();
+            expectedDurations.remove(name);
+        }
 
-        if (sendIpc(2, name)) return;
+        if (sendIpc(IpcProtocol.AFTER_ENTRYPOINT_TYPE, name) || quietEntrypoints) return;
 
         println("Finished loading screen for entrypoint '" + name + "'");
-        if (dialog == null) return;
+    }
 
-        final JProgressBar progressBar = progressBars.remove(name);
-        if (progressBar == null) return;
-        label.remove(progressBar);
-        dialog.pack();
+    /**
+     * Called at the start of {@code EntrypointUtils.invoke0}. If parallel entrypoints are enabled and any of the mods
+     * providing this entrypoint is parallel-safe, this invokes all of them, parallel-safe ones concurrently, and
+     * returns {@code true} so that the loader's own loop is skipped.
+     */
+    public static <T> boolean invokeParallel(String name, Class<T> type, Consumer<? super T> invoker) {
+        if (!enableParallelEntrypoints || RUNNING_ON_QUILT) {
+            return false;
+        }
+
+        final List<EntrypointContainer<T>> containers = FabricLoader.getInstance().getEntrypointContainers(name, type);
+        final boolean[] parallel = new boolean[containers.size()];
+        boolean anyParallel = false;
+        for (int i = 0; i < parallel.length; i++) {
+            parallel[i] = ParallelEntrypoints.isParallelSafe(
+                containers.get(i).getProvider().getMetadata(), parallelEntrypointMods
+            );
+            anyParallel |= parallel[i];
+        }
+        if (!anyParallel) {
+            return false;
+        }
+
+        final String typeType = type.getSimpleName();
+        beforeEntrypointType(name, typeType, containers.size());
+        final Map<String, Long> expected = estimateEntrypointType(name, containers);
+        if (expected != null) {
+            expectedDurations.put(name, new ConcurrentHashMap<>(expected));
+        }
+
+        final Throwable[] failures = new Throwable[containers.size()];
+        final Runnable[] tasks = new Runnable[containers.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            final int index = i;
+            final EntrypointContainer<T> container = containers.get(i);
+            final ModMetadata metadata = container.getProvider().getMetadata();
+            tasks[i] = () -> {
+                beforeSingleEntrypoint(name, typeType, metadata.getId(), metadata.getName());
+                try {
+                    invoker.accept(container.getEntrypoint());
+                } catch (Throwable t) {
+                    failures[index] = t;
+                } finally {
+                    afterSingleEntrypoint();
+                }
+            };
+        }
+        ParallelEntrypoints.runAll(tasks, parallel);
+
+        // Gathered in declaration order, so that the same exception is thrown as if the entrypoints ran one at a time
+        RuntimeException exception = null;
+        for (int i = 0; i < failures.length; i++) {
+            if (failures[i] == null) continue;
+            final String modId = containers.get(i).getProvider().getMetadata().getId();
+            exception = ExceptionUtil.gatherExceptions(failures[i], exception, exc -> new RuntimeException(String.format(
+                "Could not execute entrypoint stage '%s' due to errors, provided by '%s'!", name, modId
+            ), exc));
+        }
+
+        afterEntrypointType(name);
+        if (exception != null) {
+            throw exception;
+        }
+        return true;
     }
 
     public static void maybeCloseAfter(String type) {
@@ -283,149 +1072,668 @@ public class ActualLoadingScreen {
                     !FabricLoader.getInstance().getEntrypointContainers(type + "_init", Object.class).isEmpty()
                 )
         ) return;
-        sendIpc(4);
         close();
     }
 
     private static void close() {
-        if (memoryThread != null) {
-            memoryThread.interrupt();
+        if (memoryMonitor != null) {
+            memoryMonitor.close();
+        }
+        final ClassLoadProbe probe;
+        final MixinProbe mixins;
+        synchronized (PROBES_LOCK) {
+            probesClosed = true;
+            probe = classLoadProbe;
+            if (probe != null) {
+                classLoadProbe = null;
+                ClassLoadProbe.instance = null;
+                instrumentation.removeTransformer(probe);
+            }
+            mixins = mixinProbe;
+            if (mixins != null) {
+                mixinProbe = null;
+                MixinProbe.instance = null;
+            }
+        }
+        final Java2dRenderer renderer = java2dRenderer;
+        if (renderer != null) {
+            java2dRenderer = null;
+            renderer.close();
+            progressRegistry.clear();
         }
         if (dialog != null) {
-            dialog.dispose();
+            uiTimer.stop();
+            final JFrame oldDialog = dialog;
+            SwingUtilities.invokeLater(() -> {
+                oldDialog.dispose();
+                progressBars.clear();
+            });
             dialog = null;
-            progress.clear();
-            progressBars.clear();
+            progressRegistry.clear();
         }
+        closeListeners();
+        closeCustomBars();
         if (ipcOut != null) {
+            final AsyncIpcWriter writer = ipcOut;
+            ipcOut = null;
+            writer.close();
+            println(
+                "IPC writer sent " + writer.getSentMessages() + " messages, dropped " + writer.getDroppedMessages() +
+                    " stale memory samples, and spent " + writer.getEnqueueNanos() / 1_000_000L +
+                    " ms enqueueing (max queue depth " + writer.getMaxQueueDepth() + ")"
+            );
+        }
+        if (startupTrace != null) {
+            writeStartupTrace();
+        }
+        if (!IS_IPC_CLIENT) {
+            writeStartupReport(probe, mixins);
+        }
+        if (launchHistory != null) {
+            final Path historyFile = CONFIG_DIR.resolve("launch-history.bin");
             try {
-                ipcOut.close();
-            } catch (IOException e) {
-                println("Failed to close ipcOut", e);
+                launchHistory.save(historyFile);
+            } catch (Exception e) {
+                println("Failed to save launch history", e);
             }
-            ipcOut = null;
+            launchHistory = null;
+        }
+        logger.flush(LOG_FLUSH_TIMEOUT_MS);
+    }
+
+    private static void writeStartupTrace() {
+        final Path traceFile = CONFIG_DIR.resolve("startup-trace.json");
+        try {
+            startupTrace.write(traceFile);
+            println("Wrote " + startupTrace.size() + " spans to " + traceFile);
+        } catch (Exception e) {
+            println("Failed to write startup trace", e);
+        }
+        startupTrace = null;
+    }
+
+    private static void writeStartupReport(@Nullable ClassLoadProbe probe, @Nullable MixinProbe mixins) {
+        final StartupReport report = new StartupReport();
+        if (launchHistory != null && enableLaunchLog) {
+            compareToPreviousLaunches(report);
+        }
+        if (probe != null) {
+            final List<String> classLoadingReport = probe.getReport(30);
+            println(classLoadingReport.get(0));
+            report.addSection("Class loading by mod", classLoadingReport);
+        }
+        if (mixins != null) {
+            try {
+                final List<String> mixinReport = mixins.getReport(20);
+                println(mixinReport.get(0));
+                report.addSection("Most expensive mixin configs", mixinReport);
+            } catch (Exception e) {
+                println("Failed to attribute Mixin time to configs", e);
+            }
+        }
+        if (report.getLines().isEmpty()) return;
+        try {
+            report.write(CONFIG_DIR.resolve("startup-report.txt"));
+        } catch (Exception e) {
+            println("Failed to write startup report", e);
+        }
+    }
+
+    private static void compareToPreviousLaunches(StartupReport report) {
+        final Path logFile = CONFIG_DIR.resolve("launch-log.tsv");
+        try {
+            final List<LaunchLog.Launch> previous = LaunchLog.read(logFile);
+            final LaunchLog.Launch launch = new LaunchLog.Launch(
+                System.currentTimeMillis(), ManagementFactory.getRuntimeMXBean().getUptime()
+            );
+            for (final ModContainer mod : FabricLoader.getInstance().getAllMods()) {
+                launch.versions.put(mod.getMetadata().getId(), mod.getMetadata().getVersion().getFriendlyString());
+            }
+            launchHistory.getLaunchDurations().forEach((modId, nanos) -> launch.entrypointMicros.put(modId, nanos / 1000L));
+
+            report.compare(launch, previous, regressionThresholdPercent);
+            for (final String line : report.getLines()) {
+                println(line);
+            }
+            LaunchLog.append(logFile, launch, previous);
+        } catch (Exception e) {
+            println("Failed to update launch log", e);
+        }
+    }
+
+    /**
+     * Adds a listener for the events in {@link ListenerDispatcher}, which is given them in batches on the dispatcher
+     * thread. If the loading screen has already closed, the listener is only told that. Used by the API.
+     */
+    public static synchronized void addListener(Consumer<List<Object[]>> listener) {
+        if (screenClosed) {
+            listener.accept(Collections.singletonList(new Object[] {ListenerDispatcher.SCREEN_CLOSED}));
+            return;
+        }
+        if (listenerDispatcher == null) {
+            listenerDispatcher = new ListenerDispatcher(
+                progressRegistry, ActualLoadingScreen::getMemoryPoolUsage, ActualLoadingScreen::println
+            );
+        }
+        listenerDispatcher.addListener(listener);
+    }
+
+    private static synchronized void closeListeners() {
+        screenClosed = true;
+        if (listenerDispatcher != null) {
+            progressRegistry.setListener(null);
+            listenerDispatcher.screenClosed();
+            listenerDispatcher = null;
         }
     }
 
     public static boolean isOpen() {
-        return dialog != null || ipcOut != null;
+        return dialog != null || java2dRenderer != null || ipcOut != null;
     }
 
-    private static void updateMemoryUsage() {
-        if (IS_IPC_CLIENT || !enableMemoryDisplay) return;
+    private static void updateMemoryUsage(long[] sample) {
+        final ListenerDispatcher dispatcher = listenerDispatcher;
+        if (dispatcher != null) {
+            dispatcher.memoryStats(sample);
+        }
+        if (ENABLE_IPC) {
+            final AsyncIpcWriter writer = ipcOut;
+            if (writer != null) {
+                writer.sendMemoryUsage(sample);
+            }
+            return;
+        }
+
+        updateMemoryUsage0(sample);
+    }
+
+    private static void updateMemoryUsage0(long[] sample) {
+        memoryUsage = sample;
+        uiDirty = true;
+    }
+
+    private static void updateClassLoading0(long[] sample) {
+        if (Arrays.equals(sample, classLoading)) return;
+        classLoading = sample;
+        uiDirty = true;
+    }
+
+    private static void updateMixinStats0(long[] sample) {
+        if (Arrays.equals(sample, mixinStats)) return;
+        mixinStats = sample;
+        uiDirty = true;
+    }
+
+    /**
+     * Returns the latest sample from the memory monitor, indexed by the constants in {@link MemoryMonitor}, or
+     * {@code null} if memory monitoring isn't running. Used by the API.
+     */
+    @Nullable
+    public static long[] getMemoryStats() {
+        final MemoryMonitor monitor = memoryMonitor;
+        if (monitor == null) {
+            return null;
+        }
+        final long[] sample = monitor.getLatest();
+        return sample != null ? sample.clone() : null;
+    }
+
+    /**
+     * Returns the current usage of each heap memory pool, or an empty map if memory monitoring isn't running. Used by
+     * the API.
+     */
+    public static Map<String, Long> getMemoryPoolUsage() {
+        final MemoryMonitor monitor = memoryMonitor;
+        return monitor != null ? monitor.getPoolUsage() : Collections.emptyMap();
+    }
+
+    /**
+     * Opens a custom progress bar and returns its id. Used by the API.
+     */
+    public static int createProgressBar(String name, long max) {
+        final ProgressRegistry.Bar bar = progressRegistry.open(name, null, max);
+        synchronized (CUSTOM_BARS_LOCK) {
+            final int id = customBars.length;
+            putCustomBar(id, bar);
+            return id;
+        }
+    }
+
+    private static void putCustomBar(int id, @Nullable ProgressRegistry.Bar bar) {
+        final ProgressRegistry.Bar[] newBars = Arrays.copyOf(customBars, Math.max(customBars.length, id + 1));
+        newBars[id] = bar;
+        customBars = newBars;
+    }
+
+    @Nullable
+    private static ProgressRegistry.Bar getCustomBar(int id) {
+        final ProgressRegistry.Bar[] bars = customBars;
+        return id >= 0 && id < bars.length ? bars[id] : null;
+    }
+
+    // Handles outlive the loading screen, so their bars are dropped here, and updates through them are ignored from then
+    // on. The array keeps its length, so that ids still aren't reused by bars created afterwards.
+    private static void closeCustomBars() {
+        final ProgressRegistry.Bar[] bars;
+        synchronized (CUSTOM_BARS_LOCK) {
+            bars = customBars;
+            customBars = new ProgressRegistry.Bar[bars.length];
+        }
+        for (final ProgressRegistry.Bar bar : bars) {
+            if (bar != null) {
+                progressRegistry.close(bar);
+            }
+        }
+    }
+
+    // The custom bar updates don't allocate, and are coalesced by the UI timer or the IPC writer thread
+    public static void stepProgressBar(int id) {
+        final ProgressRegistry.Bar bar = getCustomBar(id);
+        if (bar != null) {
+            bar.increment();
+        }
+    }
 
-        final Runtime runtime = Runtime.getRuntime();
-        final long usage = runtime.totalMemory() - runtime.freeMemory();
-        final long total = runtime.maxMemory();
+    public static void setProgressBar(int id, long value) {
+        final ProgressRegistry.Bar bar = getCustomBar(id);
+        if (bar != null) {
+            bar.set(value);
+        }
+    }
 
-        if (sendIpc(3, Long.toString(usage), Long.toString(total))) return;
+    public static void closeProgressBar(int id) {
+        final ProgressRegistry.Bar bar;
+        synchronized (CUSTOM_BARS_LOCK) {
+            bar = getCustomBar(id);
+            if (bar == null) return;
+            putCustomBar(id, null);
+        }
+        progressRegistry.close(bar);
+        sendIpc(IpcProtocol.CUSTOM_BAR_CLOSE, id);
+    }
 
-        updateMemoryUsage0(usage, total);
+    // Called by the IPC writer thread after each batch. A bar closed before this sees it is never sent, and its close
+    // message is ignored by the client.
+    private static int sendCustomBarProgress(IpcWriter writer) throws IOException {
+        final ProgressRegistry.Bar[] bars = customBars;
+        if (sentCustomBarProgress.length < bars.length) {
+            final int oldLength = sentCustomBarProgress.length;
+            sentCustomBarProgress = Arrays.copyOf(sentCustomBarProgress, bars.length);
+            Arrays.fill(sentCustomBarProgress, oldLength, bars.length, Long.MIN_VALUE);
+        }
+        int sent = 0;
+        for (int id = 0; id < bars.length; id++) {
+            final ProgressRegistry.Bar bar = bars[id];
+            if (bar == null) continue;
+            if (sentCustomBarProgress[id] == Long.MIN_VALUE) {
+                writer.write(IpcProtocol.CUSTOM_BAR_OPEN, id, bar.name, bar.max);
+                sentCustomBarProgress[id] = 0;
+                sent++;
+            }
+            final long value = bar.get();
+            if (value != sentCustomBarProgress[id]) {
+                writer.write(IpcProtocol.CUSTOM_BAR_PROGRESS, id, value);
+                sentCustomBarProgress[id] = value;
+                sent++;
+            }
+        }
+        return sent;
     }
 
-    private static void updateMemoryUsage0(long usage, long total) {
-        if (memoryBar == null) return;
+    // Runs on the EDT, or the render thread of java2dRenderer, at most uiFrameRate times per second, no matter how many
+    // updates happened since the last frame
+    private static void applyUiState() {
+        final ClassLoadProbe probe = classLoadProbe;
+        if (probe != null) {
+            updateClassLoading0(probe.sample());
+        }
+        final MixinProbe mixins = mixinProbe;
+        if (mixins != null) {
+            updateMixinStats0(mixins.sample());
+        }
+        final Java2dRenderer renderer = java2dRenderer;
+        if (dialog == null && renderer == null) return;
+        final boolean registryChanged = progressRegistry.takeChanged();
+        final ProgressRegistry.Bar[] bars = progressRegistry.snapshot();
+        // Bars weighted by expected time keep moving while an entrypoint runs, so those are redrawn every frame
+        boolean estimating = false;
+        for (final ProgressRegistry.Bar bar : bars) {
+            estimating |= bar.getExpectedTotal() > 0;
+        }
+        if (!uiDirty && !registryChanged && !estimating) return;
+        uiDirty = false;
+
+        final long now = System.nanoTime();
+        if (renderer != null) {
+            final long[] memory = enableMemoryDisplay ? memoryUsage : null;
+            final long[] classes = classLoading;
+            final long[] mixinSample = mixinStats;
+            renderer.render(
+                bars,
+                memory != null ? (double)memory[MemoryMonitor.HEAP_USED] / memory[MemoryMonitor.HEAP_MAX] : 0.0,
+                memory != null ? getMemoryLabel(memory) : null,
+                classes != null ? getClassLoadingLabel(classes) : null,
+                mixinSample != null ? getMixinLabel(mixinSample) : null
+            );
+            return;
+        }
+        final Set<ProgressRegistry.Bar> openBars = new HashSet<>(Arrays.asList(bars));
 
-        final double bytesPerMb = 1024L * 1024L;
-        final int usageMb = (int)Math.round(usage / bytesPerMb);
-        final int totalMb = (int)Math.round(total / bytesPerMb);
+        boolean barsChanged = false;
+        final Iterator<Map.Entry<ProgressRegistry.Bar, JProgressBar>> it = progressBars.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<ProgressRegistry.Bar, JProgressBar> entry = it.next();
+            if (!openBars.contains(entry.getKey())) {
+                label.remove(entry.getValue());
+                it.remove();
+                barsChanged = true;
+            }
+        }
+        for (final ProgressRegistry.Bar bar : bars) {
+            JProgressBar progressBar = progressBars.get(bar);
+            if (progressBar == null) {
+                progressBar = new JProgressBar(0, (int)Math.min(bar.max, Integer.MAX_VALUE));
+                progressBar.setStringPainted(true);
+                progressBars.put(bar, progressBar);
+                label.add(progressBar, BorderLayout.SOUTH);
+                barsChanged = true;
+            }
+            final long expectedTotal = bar.getExpectedTotal();
+            if (expectedTotal > 0) {
+                progressBar.setMaximum(ESTIMATE_RESOLUTION);
+                progressBar.setValue((int)(bar.getExpectedDone(now) * ESTIMATE_RESOLUTION / expectedTotal));
+            } else if (bar.max > Integer.MAX_VALUE) {
+                // Custom bars can count anything, such as bytes
+                progressBar.setMaximum(ESTIMATE_RESOLUTION);
+                progressBar.setValue((int)(bar.get() * (double)ESTIMATE_RESOLUTION / bar.max));
+            } else {
+                progressBar.setMaximum((int)Math.min(bar.max, Integer.MAX_VALUE));
+                progressBar.setValue((int)Math.min(bar.get(), Integer.MAX_VALUE));
+            }
+            setLabel(progressBar, bar, now);
+        }
+        if (barsChanged) {
+            dialog.pack();
+        }
+
+        final long[] memory = memoryUsage;
+        if (memoryBar != null && memory != null) {
+            memoryBar.setMaximum((int)Math.round(memory[MemoryMonitor.HEAP_MAX] / BYTES_PER_MB));
+            memoryBar.setValue((int)Math.round(memory[MemoryMonitor.HEAP_USED] / BYTES_PER_MB));
+            memoryBar.setString(getMemoryLabel(memory));
+        }
 
-        memoryBar.setMaximum(totalMb);
-        memoryBar.setValue(usageMb);
-        memoryBar.setString(usageMb + " MB / " + totalMb + " MB");
+        final long[] classes = classLoading;
+        if (classes != null) {
+            if (classLoadingLabel == null) {
+                classLoadingLabel = addStatusLabel();
+            }
+            classLoadingLabel.setText(getClassLoadingLabel(classes));
+        }
+        final long[] mixinSample = mixinStats;
+        if (mixinSample != null) {
+            if (mixinLabel == null) {
+                mixinLabel = addStatusLabel();
+            }
+            mixinLabel.setText(getMixinLabel(mixinSample));
+        }
+    }
+
+    private static String getMemoryLabel(long[] memory) {
+        final StringBuilder message = new StringBuilder()
+            .append(Math.round(memory[MemoryMonitor.HEAP_USED] / BYTES_PER_MB)).append(" MB / ")
+            .append(Math.round(memory[MemoryMonitor.HEAP_MAX] / BYTES_PER_MB)).append(" MB");
+        if (memory[MemoryMonitor.GC_COUNT] >= 0) {
+            message.append(" \u2014 ").append(memory[MemoryMonitor.GC_COUNT]).append(" GCs (")
+                .append(memory[MemoryMonitor.GC_TIME_MS]).append(" ms) \u2014 ")
+                .append(Math.round(memory[MemoryMonitor.ALLOCATION_RATE] / BYTES_PER_MB)).append(" MB/s");
+        }
+        return message.toString();
+    }
+
+    private static String getClassLoadingLabel(long[] classes) {
+        return "Loaded " + classes[ClassLoadProbe.CLASSES] + " classes (" +
+            classes[ClassLoadProbe.BYTES] / (1024L * 1024L) + " MB) in " +
+            classes[ClassLoadProbe.LOAD_MILLIS] + " ms \u2014 " +
+            classes[ClassLoadProbe.CLASSES_PER_SECOND] + " classes/s";
+    }
+
+    private static String getMixinLabel(long[] mixinSample) {
+        return "Mixin processed " + mixinSample[MixinProbe.CLASSES] + " classes in " +
+            mixinSample[MixinProbe.MILLIS] + " ms";
+    }
+
+    // The status lines are only added once there is something to show in them
+    private static JLabel addStatusLabel() {
+        if (statusPanel == null) {
+            statusPanel = new JPanel();
+            statusPanel.setLayout(new BoxLayout(statusPanel, BoxLayout.Y_AXIS));
+            statusPanel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+            dialog.add(statusPanel, BorderLayout.SOUTH);
+        }
+        final JLabel statusLabel = new JLabel();
+        statusPanel.add(statusLabel);
+        dialog.pack();
+        return statusLabel;
     }
 
-    private static void setLabel(JProgressBar progressBar, String typeName, String typeType, @Nullable String modName) {
-        final StringBuilder message = new StringBuilder("Loading '").append(typeName)
-            .append("' (").append(typeType).append(") \u2014 ")
-            .append(progressBar.getValue()).append('/').append(progressBar.getMaximum());
+    private static void setLabel(JProgressBar progressBar, ProgressRegistry.Bar bar, long now) {
+        progressBar.setString(getLabel(bar, now));
+    }
+
+    static String getLabel(ProgressRegistry.Bar bar, long now) {
+        return appendLabel(new StringBuilder(), bar, now).toString();
+    }
+
+    /**
+     * Appends the text of a progress bar, without allocating once {@code message} has room for it.
+     */
+    static StringBuilder appendLabel(StringBuilder message, ProgressRegistry.Bar bar, long now) {
+        if (bar.typeType != null) {
+            message.append("Loading '").append(bar.name).append("' (").append(bar.typeType).append(')');
+        } else {
+            message.append(bar.name);
+        }
+        message.append(" \u2014 ").append(bar.get()).append('/').append(bar.max);
+        final long expectedTotal = bar.getExpectedTotal();
+        if (expectedTotal > 0) {
+            // Rounded up, so that it doesn't say 0s while there's still something running
+            final long seconds = (expectedTotal - bar.getExpectedDone(now) + 999_999_999L) / 1_000_000_000L;
+            message.append(" \u2014 about ");
+            if (seconds >= 60) {
+                message.append(seconds / 60).append("m ");
+            }
+            message.append(seconds % 60).append("s left");
+        }
+        final String modName = bar.getDetail();
         if (modName != null) {
             message.append(" \u2014 ").append(modName);
         }
-        progressBar.setString(message.toString());
+        return message;
     }
 
     private static void println(String message) {
         println(message, null);
     }
 
-    private static void println(String message, Throwable t) {
-        final String prefix = IS_IPC_CLIENT
-            ? "[ModLoadingScreen (IPC client)] "
-            : ENABLE_IPC
-                ? "[ModLoadingScreen (IPC server)] "
-                : "[ModLoadingScreen] ";
-        System.out.println(prefix + message);
-        if (logFile != null) {
-            logFile.println(message);
+    /**
+     * Queues a message for {@link #logger}. Messages with a stack trace are warnings.
+     */
+    private static void println(String message, @Nullable Throwable t) {
+        logger.log(t != null ? AsyncLogger.WARN : AsyncLogger.INFO, message, t);
+    }
+
+    private static boolean sendIpc(int id, Object... args) {
+        if (!ENABLE_IPC) {
+            return false;
         }
-        if (t != null) {
-            t.printStackTrace();
-            if (logFile != null) {
-                t.printStackTrace(logFile);
-            }
+        final AsyncIpcWriter writer = ipcOut;
+        if (writer != null) {
+            writer.send(id, args);
         }
+        return true;
     }
 
-    private static boolean sendIpc(int id, String... args) {
+    // The overloads for the messages sent for every entrypoint don't need varargs or boxing
+    private static boolean sendIpc(int id, String arg0, long arg1) {
         if (!ENABLE_IPC) {
             return false;
         }
-        if (ipcOut != null) {
+        final AsyncIpcWriter writer = ipcOut;
+        if (writer != null) {
+            writer.send(id, arg0, arg1);
+        }
+        return true;
+    }
+
+    private static boolean sendIpc(int id, String arg0, String arg1, String arg2, String arg3) {
+        if (!ENABLE_IPC) {
+            return false;
+        }
+        final AsyncIpcWriter writer = ipcOut;
+        if (writer != null) {
+            writer.send(id, arg0, arg1, arg2, arg3);
+        }
+        return true;
+    }
+
+    private static void ipcFailed(String message, IOException e) {
+        if ("The pipe is being closed".equals(e.getMessage())) {
+            System.exit(0);
+        }
+        println(message, e);
+    }
+
+    // Nothing is sent through the pipe when using shared memory, but it's still closed when the game is done or dies
+    private static void watchIpcPipe(SharedMemoryRing.RingInputStream ringIn) {
+        final Thread watcher = new Thread(() -> {
             try {
-                //noinspection SynchronizeOnNonFinalField
-                synchronized (ipcOut) {
-                    ipcOut.writeByte(id);
-                    ipcOut.writeByte(args.length);
-                    for (final String arg : args) {
-                        ipcOut.writeUTF(arg);
-                    }
-                    ipcOut.flush();
+                while (System.in.read() != -1) {
+                    // Nothing is expected, but read it anyway
                 }
-            } catch (IOException e) {
-                if (e.getMessage().equals("The pipe is being closed")) {
-                    System.exit(0);
-                }
-                println("Failed to send IPC message (id " + id + "): " + String.join("\t", args), e);
+            } catch (IOException ignored) {
             }
-        }
-        return true;
+            ringIn.endOfInput();
+        }, "IpcPipeWatcher");
+        watcher.setDaemon(true);
+        watcher.start();
     }
 
     // IPC client
     public static void main(String[] args) {
         try (PrintStream logFile = new PrintStream("ipc-client-log.txt")) {
-            ActualLoadingScreen.logFile = logFile;
-            startLoadingScreen();
-            final DataInputStream in = new DataInputStream(System.in);
-            mainLoop:
-            while (true) {
-                final int packetId = in.readByte();
-                final String[] packetArgs = new String[in.readByte()];
-                for (int i = 0; i < packetArgs.length; i++) {
-                    packetArgs[i] = in.readUTF();
+            logger.setFile(logFile);
+            try {
+                runIpcClient();
+                println("IPC client exiting cleanly");
+            } catch (Exception e) {
+                println("Error in IPC client", e);
+            }
+            // The log file is closed after this, so anything still queued has to be written to it first
+            logger.flush(LOG_FLUSH_TIMEOUT_MS);
+            logger.setFile(null);
+        } catch (FileNotFoundException e) {
+            println("Failed to open ipc-client-log.txt", e);
+        }
+        close();
+    }
+
+    private static void runIpcClient() throws IOException {
+        startLoadingScreen();
+        final String ringPath = System.getProperty("mlsipc.ring");
+        final IpcReader in;
+        if (ringPath != null) {
+            final SharedMemoryRing.RingInputStream ringIn = SharedMemoryRing.open(Paths.get(ringPath))
+                .input(TimeUnit.SECONDS.toNanos(1L) / uiFrameRate);
+            watchIpcPipe(ringIn);
+            in = new IpcReader(new BufferedInputStream(ringIn));
+            println("Using IPC protocol version " + in.getVersion() + " over shared memory");
+        } else {
+            in = new IpcReader(new BufferedInputStream(System.in));
+            println("Using IPC protocol version " + in.getVersion());
+        }
+        mainLoop:
+        while (true) {
+            final int messageId = in.nextMessage();
+            switch (messageId) {
+                case IpcProtocol.BEFORE_ENTRYPOINT_TYPE:
+                    beforeEntrypointType(in.readString(), in.readString(), (int)in.readLong());
+                    break;
+                case IpcProtocol.BEFORE_SINGLE_ENTRYPOINT:
+                    beforeSingleEntrypoint(in.readString(), in.readString(), in.readString(), in.readString());
+                    break;
+                case IpcProtocol.AFTER_ENTRYPOINT_TYPE:
+                    afterEntrypointType(in.readString());
+                    break;
+                case IpcProtocol.MEMORY_USAGE: {
+                    final long[] sample = new long[MemoryMonitor.SAMPLE_SIZE];
+                    Arrays.fill(sample, -1L);
+                    sample[MemoryMonitor.HEAP_USED] = in.readLong();
+                    sample[MemoryMonitor.HEAP_MAX] = in.readLong();
+                    updateMemoryUsage0(sample);
+                    break;
                 }
-                switch (packetId) {
-                    case 0:
-                        beforeEntrypointType(packetArgs[0], packetArgs[1], Integer.parseInt(packetArgs[2]));
-                        break;
-                    case 1:
-                        beforeSingleEntrypoint(packetArgs[0], packetArgs[1], packetArgs[2], packetArgs[3]);
-                        break;
-                    case 2:
-                        afterEntrypointType(packetArgs[0]);
-                        break;
-                    case 3:
-                        updateMemoryUsage0(Long.parseLong(packetArgs[0]), Long.parseLong(packetArgs[1]));
-                        break;
-                    case 4:
-                        break mainLoop;
+                case IpcProtocol.MEMORY_STATS: {
+                    final long[] sample = new long[MemoryMonitor.SAMPLE_SIZE];
+                    sample[MemoryMonitor.HEAP_USED] = in.readLong();
+                    sample[MemoryMonitor.HEAP_MAX] = in.readLong();
+                    sample[MemoryMonitor.GC_COUNT] = in.readLong();
+                    sample[MemoryMonitor.GC_TIME_MS] = in.readLong();
+                    sample[MemoryMonitor.ALLOCATION_RATE] = in.readLong();
+                    updateMemoryUsage0(sample);
+                    break;
+                }
+                case IpcProtocol.TYPE_ESTIMATE: {
+                    final ProgressRegistry.Bar bar = progressRegistry.get(in.readString());
+                    final long expectedMicros = in.readLong();
+                    if (bar != null) {
+                        bar.setExpectedTotal(expectedMicros * 1000L);
+                    }
+                    break;
                 }
+                case IpcProtocol.ENTRYPOINT_ESTIMATE: {
+                    final ProgressRegistry.Bar bar = progressRegistry.get(in.readString());
+                    final long expectedMicros = in.readLong();
+                    if (bar != null) {
+                        bar.beginEntrypoint(expectedMicros * 1000L);
+                    }
+                    break;
+                }
+                case IpcProtocol.CLASS_LOADING: {
+                    final long[] sample = new long[ClassLoadProbe.SAMPLE_SIZE];
+                    sample[ClassLoadProbe.CLASSES] = in.readLong();
+                    sample[ClassLoadProbe.BYTES] = in.readLong();
+                    sample[ClassLoadProbe.LOAD_MILLIS] = in.readLong();
+                    sample[ClassLoadProbe.CLASSES_PER_SECOND] = in.readLong();
+                    updateClassLoading0(sample);
+                    break;
+                }
+                case IpcProtocol.MIXIN_STATS: {
+                    final long[] sample = new long[MixinProbe.SAMPLE_SIZE];
+                    sample[MixinProbe.CLASSES] = in.readLong();
+                    sample[MixinProbe.MILLIS] = in.readLong();
+                    updateMixinStats0(sample);
+                    break;
+                }
+                case IpcProtocol.CUSTOM_BAR_OPEN: {
+                    final int id = (int)in.readLong();
+                    final ProgressRegistry.Bar bar = progressRegistry.open(in.readString(), null, in.readLong());
+                    synchronized (CUSTOM_BARS_LOCK) {
+                        putCustomBar(id, bar);
+                    }
+                    break;
+                }
+                case IpcProtocol.CUSTOM_BAR_PROGRESS:
+                    setProgressBar((int)in.readLong(), in.readLong());
+                    break;
+                case IpcProtocol.CUSTOM_BAR_CLOSE:
+                    closeProgressBar((int)in.readLong());
+                    break;
+                case IpcProtocol.CLOSE:
+                    break mainLoop;
+                default:
+                    throw new IOException("Unknown IPC message id " + messageId);
             }
-            println("IPC client exiting cleanly");
-        } catch (Exception e) {
-            println("Error in IPC client", e);
         }
-        close();
     }
 }
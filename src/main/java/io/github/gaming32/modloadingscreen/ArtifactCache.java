@@ -0,0 +1,99 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A content-addressed cache of files extracted from the mod jar. Each cached file is named after the size and CRC-32
+ * of its contents, so an extraction can be skipped entirely when the cache already holds an identical copy.
+ */
+final class ArtifactCache {
+    // Other versions of an artifact extracted more recently than this may belong to another instance that's still
+    // starting. Their modification times aren't touched when they're reused, as ClassDataSharing keys its archives on
+    // them.
+    private static final long STALE_AGE_MS = TimeUnit.HOURS.toMillis(6L);
+
+    private ArtifactCache() {
+    }
+
+    /**
+     * Returns the path that the cached copy of {@code source} is stored at, which is
+     * {@code <baseName>-<key><extension>}.
+     */
+    static Path path(Path cacheDir, Path source, String baseName, String extension) throws IOException {
+        return cacheDir.resolve(baseName + '-' + key(source) + extension);
+    }
+
+    /**
+     * Makes sure that {@code dest}, as returned by {@link #path}, holds a copy of {@code source}. Other cached
+     * versions of the same artifact are deleted once they're older than {@link #STALE_AGE_MS}.
+     *
+     * @return {@code true} if the file had to be extracted, or {@code false} if the cached copy was reused
+     */
+    static boolean extract(Path source, Path dest, String baseName, String extension) throws IOException {
+        final Path cacheDir = dest.getParent();
+        boolean extracted = false;
+        if (!Files.isRegularFile(dest) || Files.size(dest) != Files.size(source)) {
+            Files.createDirectories(cacheDir);
+            final Path temp = Files.createTempFile(cacheDir, baseName, ".tmp");
+            try {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                try {
+                    Files.move(temp, dest, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, dest, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            extracted = true;
+        }
+        deleteStale(cacheDir, baseName, extension, dest.getFileName().toString());
+        return extracted;
+    }
+
+    /**
+     * Returns a key identifying the contents of {@code path}. For files inside a jar, the size and CRC-32 are read
+     * from the jar's central directory, so the contents don't need to be read at all.
+     */
+    static String key(Path path) throws IOException {
+        final long size = Files.size(path);
+        Object crc = null;
+        try {
+            crc = Files.getAttribute(path, "zip:crc");
+        } catch (UnsupportedOperationException | IllegalArgumentException ignored) {
+        }
+        if (!(crc instanceof Long)) {
+            final CRC32 crc32 = new CRC32();
+            final byte[] buffer = new byte[8192];
+            try (InputStream is = Files.newInputStream(path)) {
+                int n;
+                while ((n = is.read(buffer)) != -1) {
+                    crc32.update(buffer, 0, n);
+                }
+            }
+            crc = crc32.getValue();
+        }
+        return Long.toHexString(size) + '-' + String.format("%08x", (Long)crc);
+    }
+
+    private static void deleteStale(Path cacheDir, String baseName, String extension, String keep) throws IOException {
+        final long staleBefore = System.currentTimeMillis() - STALE_AGE_MS;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, baseName + "*" + extension)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                if (name.equals(keep)) continue;
+                try {
+                    if (Files.getLastModifiedTime(path).toMillis() < staleBefore) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (IOException ignored) {
+                    // Still open in another instance, on Windows
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Sends IPC messages from a dedicated writer thread, so that threads running mod entrypoints never block on the
+ * pipe to the IPC client. Messages are queued on a bounded {@link MpscQueue} and written in batches by the writer
+ * thread. The queue's messages are reused, so the overloads of {@code send} for the messages sent for every entrypoint
+ * don't allocate anything.
+ *
+ * <p>Entrypoint messages are never dropped. If the queue is full, the sender waits for the writer thread to make room.
+ * Memory samples are kept in a single slot instead, where a newer sample replaces one that hasn't been sent yet.
+ * State that changes too often to queue every change, such as custom progress bars, is read by a {@link Poller} after
+ * each batch instead, so only its latest value is sent.
+ */
+final class AsyncIpcWriter {
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final long CLOSE_TIMEOUT_MS = 2000L;
+
+    private final IpcWriter writer;
+    private final long flushIntervalNanos;
+    private final BiConsumer<String, IOException> errorHandler;
+    private final Poller poller;
+    private final MpscQueue<IpcWriter.Message> queue = new MpscQueue<>(QUEUE_CAPACITY, IpcWriter.Message::new);
+    private final AtomicReference<long[]> pendingMemoryUsage = new AtomicReference<>();
+    private final Thread thread;
+    private volatile boolean closed;
+    // Set once the writer thread has stopped, such as when the IPC client exited, after which nothing drains the queue
+    private volatile boolean dead;
+
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong enqueueNanos = new AtomicLong();
+    private volatile int maxQueueDepth;
+
+    AsyncIpcWriter(
+        IpcWriter writer, long flushIntervalMs, BiConsumer<String, IOException> errorHandler, Poller poller
+    ) {
+        this.writer = writer;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.errorHandler = errorHandler;
+        this.poller = poller;
+        thread = new Thread(this::run, "IpcWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param args Either {@link String}s or {@link Number}s
+     */
+    void send(int id, Object... args) {
+        final long start = System.nanoTime();
+        final long position = claim();
+        if (position < 0) return;
+        queue.get(position).set(id, args);
+        publish(position, start);
+    }
+
+    void send(int id, String arg0, long arg1) {
+        final long start = System.nanoTime();
+        final long position = claim();
+        if (position < 0) return;
+        queue.get(position).reset(id).add(arg0).add(arg1);
+        publish(position, start);
+    }
+
+    void send(int id, String arg0, String arg1, String arg2, String arg3) {
+        final long start = System.nanoTime();
+        final long position = claim();
+        if (position < 0) return;
+        queue.get(position).reset(id).add(arg0).add(arg1).add(arg2).add(arg3);
+        publish(position, start);
+    }
+
+    // Returns -1 if the writer thread has stopped, or the writer was closed while waiting for room
+    private long claim() {
+        if (dead) return -1L;
+        long position;
+        while ((position = queue.claim()) < 0) {
+            if (closed || dead) return -1L;
+            LockSupport.unpark(thread);
+            Thread.yield();
+        }
+        return position;
+    }
+
+    private void publish(long position, long start) {
+        queue.publish(position);
+        final int depth = queue.size();
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+        if (depth > QUEUE_CAPACITY / 2) {
+            LockSupport.unpark(thread);
+        }
+        enqueueNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * @param sample A sample from {@link MemoryMonitor}
+     */
+    void sendMemoryUsage(long[] sample) {
+        final long start = System.nanoTime();
+        if (pendingMemoryUsage.getAndSet(sample) != null) {
+            droppedMessages.incrementAndGet();
+        }
+        enqueueNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Sends the {@link IpcProtocol#CLOSE} message after every message that is already queued, and waits a bounded
+     * amount of time for the writer thread to finish. Never blocks on a full queue: if there's no room for the close
+     * message, the writer thread closes the stream once it has written the rest.
+     */
+    void close() {
+        closed = true;
+        final long position = queue.claim();
+        if (position >= 0) {
+            queue.get(position).reset(IpcProtocol.CLOSE);
+            queue.publish(position);
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    long getSentMessages() {
+        return sentMessages.get();
+    }
+
+    long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    long getEnqueueNanos() {
+        return enqueueNanos.get();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final boolean wasClosed = closed;
+                final long[] memoryUsage = pendingMemoryUsage.getAndSet(null);
+                if (memoryUsage != null) {
+                    if (writer.getVersion() == IpcProtocol.V1) {
+                        writer.write(
+                            IpcProtocol.MEMORY_USAGE,
+                            memoryUsage[MemoryMonitor.HEAP_USED], memoryUsage[MemoryMonitor.HEAP_MAX]
+                        );
+                    } else {
+                        writer.write(
+                            IpcProtocol.MEMORY_STATS,
+                            memoryUsage[MemoryMonitor.HEAP_USED], memoryUsage[MemoryMonitor.HEAP_MAX],
+                            memoryUsage[MemoryMonitor.GC_COUNT], memoryUsage[MemoryMonitor.GC_TIME_MS],
+                            memoryUsage[MemoryMonitor.ALLOCATION_RATE]
+                        );
+                    }
+                    sentMessages.incrementAndGet();
+                }
+                long position;
+                while ((position = queue.peek()) >= 0) {
+                    final IpcWriter.Message message = queue.get(position);
+                    final int id = message.id;
+                    writer.write(message);
+                    queue.release(position);
+                    sentMessages.incrementAndGet();
+                    if (id == IpcProtocol.CLOSE) {
+                        writer.close();
+                        return;
+                    }
+                }
+                sentMessages.addAndGet(poller.poll(writer));
+                writer.flush();
+                if (wasClosed) {
+                    // The close message may not have fit in the queue, or been queued after this batch
+                    writer.close();
+                    return;
+                }
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        } catch (IOException e) {
+            errorHandler.accept("Failed to send IPC messages", e);
+        } finally {
+            dead = true;
+        }
+    }
+
+    /**
+     * Writes messages for state that has changed since it was last polled. Only called on the writer thread, after the
+     * queued messages of each batch have been written.
+     */
+    @FunctionalInterface
+    interface Poller {
+        /**
+         * @return The number of messages written.
+         */
+        int poll(IpcWriter writer) throws IOException;
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Writes log messages from a dedicated thread, so that logging from the thread running mod entrypoints only costs an
+ * enqueue on a bounded {@link MpscQueue}. Messages below the configured level are discarded before being queued.
+ *
+ * <p>Logging never blocks. If the queue is full, the message is dropped and counted, and the number of dropped
+ * messages is logged once there's room again. Messages still queued at shutdown are written by {@link #flush}, which
+ * only waits a bounded amount of time.
+ */
+final class AsyncLogger {
+    static final int DEBUG = 0;
+    static final int INFO = 1;
+    static final int WARN = 2;
+    static final int ERROR = 3;
+    static final int OFF = 4;
+    private static final String[] LEVEL_NAMES = {"debug", "info", "warn", "error", "off"};
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final long FLUSH_INTERVAL_MS = 50L;
+
+    private final String prefix;
+    private volatile PrintStream out;
+    private final PrintStream err;
+    private final MpscQueue<Record> queue = new MpscQueue<>(QUEUE_CAPACITY, Record::new);
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final Thread thread;
+    private volatile int level = INFO;
+    @Nullable
+    private volatile PrintStream file;
+    @Nullable
+    private volatile Consumer<Runnable> consoleGuard;
+
+    /**
+     * @param prefix Prepended to every message written to {@code out}, but not to the log file
+     * @param err Where stack traces are written, other than the log file
+     */
+    AsyncLogger(String prefix, PrintStream out, PrintStream err) {
+        this.prefix = prefix;
+        this.out = out;
+        this.err = err;
+        thread = new Thread(this::run, "LoadingScreenLogger");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The level with the given name, or {@code -1} if there isn't one
+     */
+    static int parseLevel(String name) {
+        for (int level = 0; level < LEVEL_NAMES.length; level++) {
+            if (LEVEL_NAMES[level].equals(name.trim().toLowerCase(Locale.ROOT))) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    static String getLevelName(int level) {
+        return LEVEL_NAMES[level];
+    }
+
+    void setLevel(int level) {
+        this.level = level;
+    }
+
+    boolean isEnabled(int level) {
+        return level >= this.level;
+    }
+
+    /**
+     * Changes where messages are written, other than the log file. Messages that are still queued when the stream is
+     * changed may be written to either.
+     */
+    void setOut(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Runs each write to the console through the given function, such as {@link HeadlessProgress#printAbove}, which
+     * keeps the messages from being written over a status line.
+     */
+    void setConsoleGuard(@Nullable Consumer<Runnable> consoleGuard) {
+        this.consoleGuard = consoleGuard;
+    }
+
+    /**
+     * Also writes messages, without the prefix, to the given stream. Messages that are still queued when the stream is
+     * changed may be written to either.
+     */
+    void setFile(@Nullable PrintStream file) {
+        this.file = file;
+    }
+
+    void log(int level, String message, @Nullable Throwable thrown) {
+        if (level < this.level) return;
+        final long position = queue.claim();
+        if (position < 0) {
+            droppedMessages.incrementAndGet();
+            return;
+        }
+        final Record record = queue.get(position);
+        record.message = message;
+        record.thrown = thrown;
+        queue.publish(position);
+        if (level >= ERROR || queue.size() > QUEUE_CAPACITY / 2) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Waits for the messages that are already queued to be written, but no longer than the given timeout.
+     *
+     * @return Whether every message was written in time
+     */
+    boolean flush(long timeoutMs) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (queue.size() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1L));
+        }
+        return true;
+    }
+
+    long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    private void run() {
+        long reportedDropped = 0;
+        while (true) {
+            long position;
+            while ((position = queue.peek()) >= 0) {
+                final Record record = queue.get(position);
+                try {
+                    write(record.message, record.thrown);
+                } catch (RuntimeException e) {
+                    // Logging must not take down the logger thread, and there's nowhere else to report it
+                }
+                record.message = null;
+                record.thrown = null;
+                queue.release(position);
+            }
+            final long dropped = droppedMessages.get();
+            if (dropped != reportedDropped) {
+                write("Dropped " + (dropped - reportedDropped) + " log messages because the log queue was full", null);
+                reportedDropped = dropped;
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+        }
+    }
+
+    private void write(String message, @Nullable Throwable thrown) {
+        final Consumer<Runnable> consoleGuard = this.consoleGuard;
+        if (consoleGuard != null) {
+            consoleGuard.accept(() -> writeConsole(message, thrown));
+        } else {
+            writeConsole(message, thrown);
+        }
+        final PrintStream file = this.file;
+        if (file != null) {
+            file.println(message);
+            if (thrown != null) {
+                thrown.printStackTrace(file);
+            }
+        }
+    }
+
+    private void writeConsole(String message, @Nullable Throwable thrown) {
+        out.println(prefix + message);
+        if (thrown != null) {
+            thrown.printStackTrace(err);
+        }
+    }
+
+    private static final class Record {
+        String message;
+        @Nullable
+        Throwable thrown;
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.gaming32.modloadingscreen;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Caches the background image already decoded and scaled to the size of the loading screen. Cached images are stored
+ * as raw ARGB pixels, keyed by the size and CRC-32 of the source image and by the target size, so loading one is just
+ * a bulk read.
+ */
+final class BackgroundImageCache {
+    private static final int MAGIC = 0x4d4c5342; // MLSB
+    private static final String PREFIX = "background-";
+    private static final String EXTENSION = ".bin";
+    // Cached images for other backgrounds that were used more recently than this may belong to another instance, such
+    // as one with a different resource pack, which would otherwise decode its background again on every launch
+    private static final long STALE_AGE_MS = TimeUnit.DAYS.toMillis(7L);
+
+    private BackgroundImageCache() {
+    }
+
+    /**
+     * Loads the background image from {@code source}, scaled to {@code width}x{@code height}, from the cache if
+     * possible.
+     *
+     * @param log Receives a message describing how the image was loaded and how long that took
+     */
+    static BufferedImage load(
+        InputStream source, Path cacheDir, int width, int height, Consumer<String> log
+    ) throws IOException {
+        final long start = System.nanoTime();
+        final byte[] sourceBytes = readAll(source);
+        final CRC32 crc = new CRC32();
+        crc.update(sourceBytes);
+        final Path cacheFile = cacheDir.resolve(
+            PREFIX + Integer.toHexString(sourceBytes.length) + '-' + String.format("%08x", crc.getValue()) + '-' +
+                width + 'x' + height + EXTENSION
+        );
+
+        if (Files.isRegularFile(cacheFile)) {
+            try {
+                final BufferedImage image = read(cacheFile, width, height);
+                try {
+                    // Its modification time is when it was last used, which keeps other instances from deleting it
+                    Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis()));
+                } catch (IOException ignored) {
+                }
+                log.accept("Loaded cached background in " + (System.nanoTime() - start) / 1_000_000L + " ms");
+                return image;
+            } catch (IOException e) {
+                Files.deleteIfExists(cacheFile);
+            }
+        }
+
+        final long decodeStart = System.nanoTime();
+        final BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(sourceBytes));
+        if (decoded == null) {
+            throw new IOException("Unsupported background image format");
+        }
+        final long scaleStart = System.nanoTime();
+        final BufferedImage scaled = scale(decoded, width, height);
+        final long scaleEnd = System.nanoTime();
+        log.accept(
+            "Decoded background in " + (scaleStart - decodeStart) / 1_000_000L + " ms and scaled it from " +
+                decoded.getWidth() + 'x' + decoded.getHeight() + " in " + (scaleEnd - scaleStart) / 1_000_000L + " ms"
+        );
+
+        try {
+            write(cacheFile, scaled);
+            deleteStale(cacheDir, cacheFile.getFileName().toString());
+        } catch (IOException e) {
+            log.accept("Failed to cache background: " + e);
+        }
+        return scaled;
+    }
+
+    static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        // Halving the size in steps keeps bilinear filtering from skipping pixels, which looks as good as
+        // Image.SCALE_SMOOTH at a fraction of the cost
+        do {
+            currentWidth = currentWidth > width ? Math.max(width, currentWidth / 2) : width;
+            currentHeight = currentHeight > height ? Math.max(height, currentHeight / 2) : height;
+            final BufferedImage next = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            g.dispose();
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static BufferedImage read(Path file, int width, int height) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect((int)channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            if (
+                buffer.remaining() != 12 + width * height * 4 ||
+                    buffer.getInt() != MAGIC || buffer.getInt() != width || buffer.getInt() != height
+            ) {
+                throw new IOException("Invalid cached background " + file);
+            }
+            final int[] pixels = new int[width * height];
+            buffer.asIntBuffer().get(pixels);
+            final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            image.getRaster().setDataElements(0, 0, width, height, pixels);
+            return image;
+        }
+    }
+
+    private static void write(Path file, BufferedImage image) throws IOException {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int[] pixels = (int[])image.getRaster().getDataElements(0, 0, width, height, null);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(12 + pixels.length * 4);
+        buffer.putInt(MAGIC).putInt(width).putInt(height);
+        final IntBuffer intBuffer = buffer.asIntBuffer();
+        intBuffer.put(pixels);
+        buffer.position(0);
+
+        Files.createDirectories(file.getParent());
+        final Path temp = Files.createTempFile(file.getParent(), PREFIX, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void deleteStale(Path cacheDir, String keep) throws IOException {
+        final long staleBefore = System.currentTimeMillis() - STALE_AGE_MS;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, PREFIX + "*" + EXTENSION)) {
+            for (final Path path : stream) {
+                if (path.getFileName().toString().equals(keep)) continue;
+                try {
+                    if (Files.getLastModifiedTime(path).toMillis() < staleBefore) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (IOException ignored) {
+                    // Being read by another instance, on Windows
+                }
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        try (InputStream in = is) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+            final byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages a dynamic AppCDS archive for the IPC client JVM. The first launch dumps the classes the IPC client loaded
+ * into an archive when it exits, and later launches map that archive to skip most of the class loading of Swing and
+ * FlatLaf. Dynamic archives need Java 13 or later, so older runtimes simply run without one.
+ */
+final class ClassDataSharing {
+    static final String MODE_PROPERTY = "mlsipc.cds";
+    static final String MODE_OFF = "off";
+    static final String MODE_DUMP = "dump";
+    static final String MODE_USE = "use";
+
+    private static final String ARCHIVE_PREFIX = "ipc-client-";
+    private static final String ARCHIVE_EXTENSION = ".jsa";
+    // Archives for other keys that were used more recently than this may belong to another installation that's still
+    // in use, such as one on another Java version, which would otherwise dump its archive again on every launch
+    private static final long STALE_AGE_MS = TimeUnit.DAYS.toMillis(7L);
+
+    private ClassDataSharing() {
+    }
+
+    static boolean isSupported() {
+        final String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(version) >= 13;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the JVM arguments for the IPC client. The archive is keyed by the runtime and the classpath, as an
+     * archive can only be mapped by the exact JVM that created it with the same classpath. Archives for any other key
+     * are deleted once they haven't been used for {@link #STALE_AGE_MS}.
+     *
+     * @param classpath The classpath of the IPC client. Must be regular files.
+     */
+    static List<String> jvmArgs(Path cacheDir, Path... classpath) throws IOException {
+        if (!isSupported()) {
+            return modeArgs(MODE_OFF);
+        }
+
+        int hash = Arrays.asList(
+            System.getProperty("java.home"), System.getProperty("java.vm.version"), System.getProperty("java.vm.name")
+        ).hashCode();
+        for (final Path path : classpath) {
+            hash = 31 * hash + path.toAbsolutePath().toString().hashCode();
+            hash = 31 * hash + Long.hashCode(Files.size(path));
+            hash = 31 * hash + Long.hashCode(Files.getLastModifiedTime(path).toMillis());
+        }
+        final String fileName = ARCHIVE_PREFIX + String.format("%08x", hash) + ARCHIVE_EXTENSION;
+        final Path archive = cacheDir.resolve(fileName);
+        deleteStale(cacheDir, fileName);
+
+        final List<String> args;
+        if (Files.isRegularFile(archive) && Files.size(archive) > 0) {
+            args = modeArgs(MODE_USE);
+            try {
+                // Its modification time is when it was last used, which keeps other instances from deleting it
+                Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException ignored) {
+            }
+            // -Xshare:auto makes the JVM silently fall back to no archive if it can't map this one
+            args.add("-Xshare:auto");
+            args.add("-XX:SharedArchiveFile=" + archive);
+        } else {
+            Files.deleteIfExists(archive);
+            args = modeArgs(MODE_DUMP);
+            args.add("-XX:ArchiveClassesAtExit=" + archive);
+        }
+        args.add("-Xlog:cds=off");
+        return args;
+    }
+
+    private static List<String> modeArgs(String mode) {
+        final List<String> args = new ArrayList<>();
+        args.add("-D" + MODE_PROPERTY + '=' + mode);
+        return args;
+    }
+
+    private static void deleteStale(Path cacheDir, String keep) throws IOException {
+        if (!Files.isDirectory(cacheDir)) return;
+        final long staleBefore = System.currentTimeMillis() - STALE_AGE_MS;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, ARCHIVE_PREFIX + "*" + ARCHIVE_EXTENSION)) {
+            for (final Path path : stream) {
+                if (path.getFileName().toString().equals(keep)) continue;
+                try {
+                    if (Files.getLastModifiedTime(path).toMillis() < staleBefore) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (IOException ignored) {
+                    // Still mapped by another instance, on Windows
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the classes defined by each mod, how many bytes they were, and how long the game's class loader spent loading
+ * them. Classes are counted by a {@link ClassFileTransformer} that never changes anything, and attributed to a mod by
+ * the location of their {@link CodeSource}. Loading time is measured by {@link #enterLoad} and {@link #exitLoad},
+ * which are injected around the class loader's load method. Loading a class often loads its superclasses, so each
+ * class is only charged the time that wasn't spent loading other classes.
+ *
+ * <p>Samples are {@code long[]}s indexed by the constants in this class.
+ */
+final class ClassLoadProbe implements ClassFileTransformer {
+    static final int CLASSES = 0;
+    static final int BYTES = 1;
+    static final int LOAD_MILLIS = 2;
+    static final int CLASSES_PER_SECOND = 3;
+    static final int SAMPLE_SIZE = 4;
+
+    private static final int MAX_DEPTH = 64;
+    private static final int OTHER = -1;
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    static volatile ClassLoadProbe instance;
+
+    private static final ThreadLocal<LoadStack> LOAD_STACK = ThreadLocal.withInitial(LoadStack::new);
+
+    private final String[] modIds;
+    private final Map<String, Integer> modsByLocation;
+    private final Map<ProtectionDomain, Integer> modsByDomain = new ConcurrentHashMap<>();
+    // Indexed by mod, with the last element for classes that don't belong to a mod
+    private final LongAdder[] classes;
+    private final LongAdder[] bytes;
+    private final LongAdder[] loadNanos;
+    private final LongAdder totalClasses = new LongAdder();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+    private final LongAdder overheadNanos = new LongAdder();
+
+    // Only accessed in sample()
+    private long rateWindowStart = System.nanoTime();
+    private long rateWindowClasses;
+    private long classesPerSecond;
+
+    /**
+     * @param modPaths The paths each mod is loaded from, by mod id.
+     */
+    ClassLoadProbe(Map<String, List<Path>> modPaths) {
+        modIds = modPaths.keySet().toArray(new String[0]);
+        modsByLocation = new HashMap<>();
+        for (int i = 0; i < modIds.length; i++) {
+            for (final Path path : modPaths.get(modIds[i])) {
+                modsByLocation.put(locationKey(path), i);
+            }
+        }
+        classes = newAdders(modIds.length + 1);
+        bytes = newAdders(modIds.length + 1);
+        loadNanos = newAdders(modIds.length + 1);
+        // Anything the transformer needs is loaded up front, as a class loaded by the transformer itself would be
+        // passed back to it
+        LOAD_STACK.get();
+        getMod(null);
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        final LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static String locationKey(Path path) {
+        try {
+            return path.toAbsolutePath().normalize().toUri().toString();
+        } catch (Exception e) {
+            return path.toUri().toString();
+        }
+    }
+
+    @Override
+    public byte[] transform(
+        ClassLoader loader, String className, Class<?> classBeingRedefined,
+        ProtectionDomain protectionDomain, byte[] classfileBuffer
+    ) {
+        if (classBeingRedefined != null) return null;
+        final long start = System.nanoTime();
+        try {
+            final int mod = getMod(protectionDomain);
+            final int slot = mod != OTHER ? mod : modIds.length;
+            classes[slot].increment();
+            bytes[slot].add(classfileBuffer.length);
+            totalClasses.increment();
+            totalBytes.add(classfileBuffer.length);
+            final LoadStack stack = LOAD_STACK.get();
+            if (stack.depth > 0 && stack.depth <= MAX_DEPTH) {
+                stack.mods[stack.depth - 1] = mod;
+            }
+        } catch (Throwable ignored) {
+            // Never let counting get in the way of loading the class
+        }
+        overheadNanos.add(System.nanoTime() - start);
+        return null;
+    }
+
+    private int getMod(ProtectionDomain domain) {
+        if (domain == null) {
+            return OTHER;
+        }
+        final Integer cached = modsByDomain.get(domain);
+        if (cached != null) {
+            return cached;
+        }
+        int mod = OTHER;
+        final CodeSource codeSource = domain.getCodeSource();
+        final URL location = codeSource != null ? codeSource.getLocation() : null;
+        if (location != null) {
+            try {
+                final Integer found = modsByLocation.get(
+                    location.getProtocol().equals("file")
+                        ? locationKey(Paths.get(location.toURI()))
+                        : location.toURI().toString()
+                );
+                if (found != null) {
+                    mod = found;
+                }
+            } catch (Exception ignored) {
+            }
+        }
+        modsByDomain.put(domain, mod);
+        return mod;
+    }
+
+    /**
+     * Called through {@link ActualLoadingScreen#beforeLoadClass} when the class loader starts loading a class.
+     */
+    static void enterLoad() {
+        if (instance == null) return;
+        final LoadStack stack = LOAD_STACK.get();
+        if (stack.depth < MAX_DEPTH) {
+            stack.starts[stack.depth] = System.nanoTime();
+            stack.children[stack.depth] = 0;
+            stack.mods[stack.depth] = OTHER;
+        }
+        stack.depth++;
+    }
+
+    /**
+     * Called through {@link ActualLoadingScreen#afterLoadClass} when the class loader finishes loading a class, whether
+     * it succeeded or not.
+     */
+    static void exitLoad() {
+        final ClassLoadProbe probe = instance;
+        if (probe == null) return;
+        final LoadStack stack = LOAD_STACK.get();
+        if (stack.depth == 0) return;
+        final int depth = --stack.depth;
+        if (depth >= MAX_DEPTH) return;
+        final long total = System.nanoTime() - stack.starts[depth];
+        final long self = total - stack.children[depth];
+        if (depth > 0) {
+            stack.children[depth - 1] += total;
+        }
+        final int mod = stack.mods[depth];
+        probe.loadNanos[mod != OTHER ? mod : probe.modIds.length].add(self);
+        probe.totalLoadNanos.add(self);
+    }
+
+    synchronized long[] sample() {
+        final long classCount = totalClasses.sum();
+        final long now = System.nanoTime();
+        if (now - rateWindowStart >= RATE_WINDOW_NANOS) {
+            classesPerSecond = (long)((classCount - rateWindowClasses) * 1e9 / (now - rateWindowStart));
+            rateWindowStart = now;
+            rateWindowClasses = classCount;
+        }
+        final long[] sample = new long[SAMPLE_SIZE];
+        sample[CLASSES] = classCount;
+        sample[BYTES] = totalBytes.sum();
+        sample[LOAD_MILLIS] = TimeUnit.NANOSECONDS.toMillis(totalLoadNanos.sum());
+        sample[CLASSES_PER_SECOND] = classesPerSecond;
+        return sample;
+    }
+
+    long getOverheadNanos() {
+        return overheadNanos.sum();
+    }
+
+    /**
+     * Returns the per-mod totals for the startup report, the mods that spent the most time loading classes first.
+     */
+    List<String> getReport(int maxMods) {
+        final Integer[] order = new Integer[modIds.length + 1];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> loadNanos[i].sum())
+            .thenComparingLong(i -> classes[i].sum())
+            .reversed());
+
+        final List<String> lines = new ArrayList<>();
+        final long[] sample = sample();
+        lines.add(
+            sample[CLASSES] + " classes (" + sample[BYTES] / 1024L + " KiB) loaded in " + sample[LOAD_MILLIS] +
+                " ms. Counting them took " + TimeUnit.NANOSECONDS.toMillis(getOverheadNanos()) + " ms."
+        );
+        for (int i = 0; i < Math.min(order.length, maxMods); i++) {
+            final int mod = order[i];
+            if (classes[mod].sum() == 0) break;
+            lines.add(String.format(
+                "  %-32s %6d classes %8d KiB %6d ms",
+                mod < modIds.length ? modIds[mod] : "(other)",
+                classes[mod].sum(), bytes[mod].sum() / 1024L, TimeUnit.NANOSECONDS.toMillis(loadNanos[mod].sum())
+            ));
+        }
+        return lines;
+    }
+
+    private static final class LoadStack {
+        final long[] starts = new long[MAX_DEPTH];
+        final long[] children = new long[MAX_DEPTH];
+        final int[] mods = new int[MAX_DEPTH];
+        int depth;
+    }
+}
@@ -0,0 +1,313 @@
+package io.github.gaming32.modloadingscreen;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.fabricmc.loader.api.metadata.ModMetadata;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks entrypoints without an agent, for when one can't be attached. The loader's entrypoint storage is changed so
+ * that the entrypoints it creates are proxies, which call the same {@link ActualLoadingScreen} hooks around each
+ * entrypoint as the instrumented {@code EntrypointUtils} would. Only the entrypoint types that the loader invokes
+ * itself are proxied, and only if they're interfaces, as other mods may expect their own classes for theirs. Parallel
+ * entrypoints aren't supported this way.
+ *
+ * <p>This is a known incompatibility, so it's only used with {@code enableEntrypointProxies} in the config. The
+ * storage is shared, so other mods that get the same entrypoints get the proxies too, which aren't the same objects
+ * as the entrypoints the loader created, can't be cast to their classes, and have a different {@code getClass()}.
+ *
+ * <p>This class is loaded by Knot, like {@link ModLoadingScreen}, so the hooks are called through method handles.
+ */
+final class EntrypointProxies {
+    private static final String ENTRYPOINT_STORAGE = "net.fabricmc.loader.impl.entrypoint.EntrypointStorage";
+    private static final Set<String> LOADER_ENTRYPOINTS = new HashSet<>(Arrays.asList(
+        "preLaunch", "main", "client", "server"
+    ));
+
+    // Entry and entrypoint methods are called through these, as the proxies pass the same Method objects every time
+    private static final Map<Method, MethodHandle> HANDLES = new ConcurrentHashMap<>();
+
+    private final MethodHandle beforeEntrypointType;
+    private final MethodHandle beforeSingleEntrypoint;
+    private final MethodHandle afterEntrypointType;
+    private final MethodHandle maybeCloseAfter;
+    private final Method getModContainer;
+    private final Map<String, TypeState> types = new HashMap<>();
+
+    private EntrypointProxies(Class<?> actualLoadingScreen, Class<?> entryClass) throws ReflectiveOperationException {
+        getModContainer = entryClass.getMethod("getModContainer");
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        beforeEntrypointType = lookup.findStatic(
+            actualLoadingScreen, "beforeEntrypointType", MethodType.methodType(void.class, String.class, Class.class)
+        );
+        beforeSingleEntrypoint = lookup.findStatic(
+            actualLoadingScreen, "beforeSingleEntrypoint",
+            MethodType.methodType(void.class, String.class, String.class, String.class, String.class)
+        );
+        afterEntrypointType = lookup.findStatic(
+            actualLoadingScreen, "afterEntrypointType", MethodType.methodType(void.class, String.class)
+        );
+        maybeCloseAfter = lookup.findStatic(
+            actualLoadingScreen, "maybeCloseAfter", MethodType.methodType(void.class, String.class)
+        );
+    }
+
+    /**
+     * Wraps the entries of the loader's entrypoint storage. Must be called before the first entrypoint is invoked.
+     *
+     * @return Whether the loader is supported
+     */
+    static boolean install(Class<?> actualLoadingScreen) {
+        try {
+            final Class<?> storageClass = Class.forName(ENTRYPOINT_STORAGE);
+            final Class<?> entryClass = Class.forName(ENTRYPOINT_STORAGE + "$Entry");
+            final Object loader = FabricLoader.getInstance();
+            final Object storage = getFieldOfType(loader, storageClass);
+            final Map<?, ?> entries = getEntryMap(storage, entryClass);
+
+            // Checked before anything is replaced, so that an unexpected loader is left as it was
+            if (!entryClass.isInterface()) {
+                throw new IllegalStateException(entryClass.getName() + " isn't an interface");
+            }
+            for (final Map.Entry<?, ?> key : entries.entrySet()) {
+                if (!LOADER_ENTRYPOINTS.contains(key.getKey())) continue;
+                if (!(key.getValue() instanceof List)) {
+                    throw new IllegalStateException("Unexpected entries for " + key.getKey() + ": " + key.getValue());
+                }
+                for (final Object entry : (List<?>)key.getValue()) {
+                    if (!entryClass.isInstance(entry)) {
+                        throw new IllegalStateException("Unexpected entry for " + key.getKey() + ": " + entry);
+                    }
+                }
+            }
+
+            final EntrypointProxies proxies = new EntrypointProxies(actualLoadingScreen, entryClass);
+            for (final Map.Entry<?, ?> key : entries.entrySet()) {
+                if (!LOADER_ENTRYPOINTS.contains(key.getKey())) continue;
+                @SuppressWarnings("unchecked")
+                final ListIterator<Object> it = ((List<Object>)key.getValue()).listIterator();
+                while (it.hasNext()) {
+                    it.set(Proxy.newProxyInstance(
+                        entryClass.getClassLoader(), new Class<?>[] {entryClass},
+                        proxies.new EntryHandler((String)key.getKey(), it.next())
+                    ));
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            System.out.println("[ModLoadingScreen] Failed to install entrypoint proxies");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static Object getFieldOfType(Object owner, Class<?> type) throws ReflectiveOperationException {
+        for (Class<?> clazz = owner.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            for (final Field field : clazz.getDeclaredFields()) {
+                if (type.isAssignableFrom(field.getType()) && !Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    return field.get(owner);
+                }
+            }
+        }
+        throw new NoSuchFieldException(type.getName() + " in " + owner.getClass().getName());
+    }
+
+    // The storage's Map<String, List<Entry>>, found by its generic type rather than its name
+    private static Map<?, ?> getEntryMap(Object storage, Class<?> entryClass) throws ReflectiveOperationException {
+        for (Class<?> clazz = storage.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            for (final Field field : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || !Map.class.isAssignableFrom(field.getType())) continue;
+                if (!(field.getGenericType() instanceof ParameterizedType)) continue;
+                final Type[] mapArgs = ((ParameterizedType)field.getGenericType()).getActualTypeArguments();
+                if (mapArgs[0] != String.class || !(mapArgs[1] instanceof ParameterizedType)) continue;
+                final ParameterizedType listType = (ParameterizedType)mapArgs[1];
+                if (listType.getRawType() == List.class && listType.getActualTypeArguments()[0] == entryClass) {
+                    field.setAccessible(true);
+                    return (Map<?, ?>)field.get(storage);
+                }
+            }
+        }
+        throw new NoSuchFieldException("Map<String, List<Entry>> in " + storage.getClass().getName());
+    }
+
+    private static Object invoke(Object proxy, Method method, Object target, Object[] args) throws Throwable {
+        // The proxies stand in for their targets, except that they're only equal to themselves
+        if (method.getName().equals("equals") && method.getDeclaringClass() == Object.class) {
+            return proxy == args[0];
+        }
+        MethodHandle handle = HANDLES.get(method);
+        if (handle == null) {
+            handle = HANDLES.computeIfAbsent(method, EntrypointProxies::unreflect);
+        }
+        return handle.invokeExact(target, args);
+    }
+
+    // Takes the target and an array of the arguments, which may be null if there aren't any
+    private static MethodHandle unreflect(Method method) {
+        method.setAccessible(true);
+        try {
+            return MethodHandles.lookup().unreflect(method)
+                .asType(MethodType.genericMethodType(method.getParameterCount() + 1))
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void call(MethodHandle hook, Object... args) {
+        try {
+            hook.invokeWithArguments(args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * The entrypoints of one type, for the first time the loader invokes them.
+     */
+    private static final class TypeState {
+        final int count;
+        final Set<Object> finished = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean done;
+
+        TypeState(int count) {
+            this.count = count;
+        }
+    }
+
+    private final class EntryHandler implements InvocationHandler {
+        final String key;
+        final Object entry;
+        Object instance;
+        Object entrypoint;
+
+        EntryHandler(String key, Object entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final Object result;
+            try {
+                result = EntrypointProxies.invoke(proxy, method, entry, args);
+            } catch (Throwable t) {
+                if (method.getName().equals("getOrCreate") && ((Class<?>)args[0]).isInterface()) {
+                    // The loader collects the exception and carries on with the next entrypoint, so this one has to
+                    // count as finished, or the type would never end
+                    final TypeState state = begin((Class<?>)args[0]);
+                    if (state != null) {
+                        end(state);
+                    }
+                }
+                throw t;
+            }
+            if (!method.getName().equals("getOrCreate") || result == null) {
+                return result;
+            }
+            final Class<?> type = (Class<?>)args[0];
+            if (!type.isInterface()) {
+                return result;
+            }
+            synchronized (this) {
+                if (result != instance) {
+                    instance = result;
+                    entrypoint = Proxy.newProxyInstance(
+                        type.getClassLoader(), new Class<?>[] {type}, new EntrypointHandler(this, type, result)
+                    );
+                }
+                return entrypoint;
+            }
+        }
+
+        // Returns null if this entry was already finished once, and isn't tracked again
+        TypeState begin(Class<?> type) {
+            final TypeState state;
+            final boolean first;
+            synchronized (types) {
+                TypeState existing = types.get(key);
+                first = existing == null;
+                if (first) {
+                    existing = new TypeState(FabricLoader.getInstance().getEntrypointContainers(key, type).size());
+                    types.put(key, existing);
+                }
+                if (existing.done || existing.finished.contains(this)) {
+                    return null;
+                }
+                state = existing;
+            }
+            if (first) {
+                call(beforeEntrypointType, key, type);
+            }
+            return state;
+        }
+
+        void end(TypeState state) {
+            synchronized (types) {
+                state.finished.add(this);
+                if (state.done || state.finished.size() < state.count) return;
+                state.done = true;
+            }
+            call(afterEntrypointType, key);
+            call(maybeCloseAfter, key);
+        }
+    }
+
+    private final class EntrypointHandler implements InvocationHandler {
+        final EntryHandler entry;
+        final Class<?> type;
+        final Object instance;
+
+        EntrypointHandler(EntryHandler entry, Class<?> type, Object instance) {
+            this.entry = entry;
+            this.type = type;
+            this.instance = instance;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return EntrypointProxies.invoke(proxy, method, instance, args);
+            }
+            final TypeState state = begin();
+            try {
+                return EntrypointProxies.invoke(proxy, method, instance, args);
+            } finally {
+                if (state != null) {
+                    entry.end(state);
+                }
+            }
+        }
+
+        // Returns null if this entrypoint was already invoked once, and isn't tracked again
+        private TypeState begin() {
+            final TypeState state = entry.begin(type);
+            if (state == null) {
+                return null;
+            }
+            final ModMetadata metadata = getProvider().getMetadata();
+            call(beforeSingleEntrypoint, entry.key, type.getSimpleName(), metadata.getId(), metadata.getName());
+            return state;
+        }
+
+        private ModContainer getProvider() {
+            try {
+                return (ModContainer)EntrypointProxies.invoke(null, getModContainer, entry.entry, null);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+}
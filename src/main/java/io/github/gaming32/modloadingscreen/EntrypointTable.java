@@ -0,0 +1,95 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The mods and entrypoint invocations of this launch, by dense int ids, so that the hooks injected into
+ * {@code EntrypointUtils} only pass an int for each entrypoint. Everything about the entrypoints of a type is looked
+ * up once, when its invocation starts, so that the hook for each entrypoint is only array reads.
+ */
+final class EntrypointTable {
+    private final Map<String, Integer> modIndices = new HashMap<>();
+    private String[] modIds = new String[64];
+    private String[] modNames = new String[64];
+    private String[] modVersions = new String[64];
+    private int modCount;
+    // Copy-on-write, so that looking up a type is a single volatile read
+    private volatile Type[] types = new Type[0];
+
+    /**
+     * Returns the id of a mod, adding it if it hasn't been seen before.
+     */
+    synchronized int addMod(String id, String name, String version) {
+        final Integer existing = modIndices.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        if (modCount == modIds.length) {
+            modIds = Arrays.copyOf(modIds, modCount * 2);
+            modNames = Arrays.copyOf(modNames, modCount * 2);
+            modVersions = Arrays.copyOf(modVersions, modCount * 2);
+        }
+        modIds[modCount] = id;
+        modNames[modCount] = name;
+        modVersions[modCount] = version;
+        modIndices.put(id, modCount);
+        return modCount++;
+    }
+
+    synchronized String getModId(int mod) {
+        return modIds[mod];
+    }
+
+    synchronized String getModName(int mod) {
+        return modNames[mod];
+    }
+
+    synchronized String getModVersion(int mod) {
+        return modVersions[mod];
+    }
+
+    /**
+     * @return The id of the type, to be passed to the hooks
+     */
+    int addType(Type type) {
+        synchronized (this) {
+            final Type[] newTypes = Arrays.copyOf(types, types.length + 1);
+            newTypes[types.length] = type;
+            types = newTypes;
+            return types.length - 1;
+        }
+    }
+
+    Type getType(int id) {
+        return types[id];
+    }
+
+    /**
+     * One invocation of the entrypoints of a type.
+     */
+    static final class Type {
+        final String name;
+        final String typeType;
+        @Nullable
+        final ProgressRegistry.Bar bar;
+        // The mod of each entrypoint, in the order the loader invokes them
+        final int[] mods;
+        // How long each entrypoint is expected to take, or null if there's no estimate
+        @Nullable
+        final long[] expectedNanos;
+        // The index of the next entrypoint. Only accessed by the thread invoking the entrypoints.
+        int position;
+
+        Type(String name, String typeType, @Nullable ProgressRegistry.Bar bar, int[] mods, @Nullable long[] expectedNanos) {
+            this.name = name;
+            this.typeType = typeType;
+            this.bar = bar;
+            this.mods = mods;
+            this.expectedNanos = expectedNanos;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+
+import java.util.ListIterator;
+
+import static io.github.gaming32.modloadingscreen.ModLoadingScreen.ACTUAL_LOADING_SCREEN;
+
+/**
+ * Adds the calls to {@link ActualLoadingScreen} to the loader's {@code EntrypointUtils}. Kept apart from
+ * {@link ModLoadingScreen} so that it can be used without starting the loading screen, such as in benchmarks.
+ */
+final class EntrypointUtilsPatcher {
+    /**
+     * Changes whenever the patch does, so that classes patched by older versions aren't used from the cache.
+     */
+    static final int FORMAT = 2;
+
+    private EntrypointUtilsPatcher() {
+    }
+
+    static byte[] patch(byte[] bytes, boolean quilt) {
+        final ClassNode clazz = new ClassNode();
+        new ClassReader(bytes).accept(clazz, 0);
+
+        instrumentInvoke(clazz, quilt);
+        instrumentInvoke0(clazz, quilt);
+
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        clazz.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private static void instrumentInvoke(ClassNode clazz, boolean quilt) {
+        final MethodNode method = clazz.methods.stream()
+            .filter(m -> m.name.equals(quilt ? "invokeContainer" : "invoke"))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+        final ListIterator<AbstractInsnNode> it = method.instructions.iterator();
+
+        while (it.hasNext()) {
+            final AbstractInsnNode insn = it.next();
+            if (!(insn instanceof InsnNode)) continue;
+            if (insn.getOpcode() == Opcodes.RETURN) break;
+        }
+        it.previous();
+        it.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        it.add(new MethodInsnNode(
+            Opcodes.INVOKESTATIC,
+            ACTUAL_LOADING_SCREEN, "maybeCloseAfter",
+            "(Ljava/lang/String;)V",
+            false
+        ));
+    }
+
+    private static void instrumentInvoke0(ClassNode clazz, boolean quilt) {
+        final MethodNode method = clazz.methods.stream()
+            .filter(m -> m.name.equals("invoke0"))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+        final ListIterator<AbstractInsnNode> it = method.instructions.iterator();
+
+        if (!quilt) {
+            final LabelNode sequential = new LabelNode();
+            it.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            it.add(new VarInsnNode(Opcodes.ALOAD, 1));
+            it.add(new VarInsnNode(Opcodes.ALOAD, 2));
+            it.add(new MethodInsnNode(
+                Opcodes.INVOKESTATIC,
+                ACTUAL_LOADING_SCREEN, "invokeParallel",
+                "(Ljava/lang/String;Ljava/lang/Class;Ljava/util/function/Consumer;)Z"
+            ));
+            it.add(new JumpInsnNode(Opcodes.IFEQ, sequential));
+            it.add(new InsnNode(Opcodes.RETURN));
+            it.add(sequential);
+        }
+
+        // Each hook only needs the id of the invocation, which beginEntrypointType looks everything else up for
+        final int typeId = method.maxLocals;
+        it.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        it.add(new VarInsnNode(Opcodes.ALOAD, 1));
+        it.add(new MethodInsnNode(
+            Opcodes.INVOKESTATIC,
+            ACTUAL_LOADING_SCREEN, "beginEntrypointType",
+            "(Ljava/lang/String;Ljava/lang/Class;)I"
+        ));
+        it.add(new VarInsnNode(Opcodes.ISTORE, typeId));
+
+        final int container = quilt ? 7 : 6;
+        while (it.hasNext()) {
+            final AbstractInsnNode insn = it.next();
+            if (!(insn instanceof VarInsnNode)) continue;
+            if (insn.getOpcode() == Opcodes.ASTORE && ((VarInsnNode)insn).var == container) break;
+        }
+        it.add(new VarInsnNode(Opcodes.ILOAD, typeId));
+        it.add(new MethodInsnNode(
+            Opcodes.INVOKESTATIC,
+            ACTUAL_LOADING_SCREEN, "beforeSingleEntrypoint",
+            "(I)V",
+            false
+        ));
+
+        while (it.hasNext()) {
+            final AbstractInsnNode insn = it.next();
+            if (!(insn instanceof InsnNode)) continue;
+            if (insn.getOpcode() == Opcodes.IFNULL) break;
+        }
+        it.previous();
+        it.previous();
+        it.add(new VarInsnNode(Opcodes.ILOAD, typeId));
+        it.add(new MethodInsnNode(
+            Opcodes.INVOKESTATIC,
+            ACTUAL_LOADING_SCREEN, "afterEntrypointType",
+            "(I)V"
+        ));
+    }
+}
@@ -0,0 +1,292 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Progress output for headless environments, in place of a log line for every entrypoint. It's a listener on
+ * {@link ListenerDispatcher}, so it only ever sees the latest progress of each bar, and never runs on the thread
+ * loading mods.
+ *
+ * <p>On a terminal, a single status line is redrawn in place a few times per second. When the output is redirected,
+ * a summary line is printed every so often instead. Either way, a line is printed for each finished entrypoint type.
+ * This class's own console lines are written from the dispatcher thread, to the same stream as the status line, and
+ * other lines can be written with {@link #printAbove}, which clears the status line first and draws it again after.
+ * Optionally, the events are also written as JSON lines, each with the JVM uptime in milliseconds, for launchers and
+ * server orchestration to read.
+ */
+final class HeadlessProgress implements Consumer<List<Object[]>> {
+    private static final long REDRAW_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250L);
+    private static final long JSON_PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+    private static final String TERM = System.getenv("TERM");
+    // Whether the line can be cleared with an escape code, rather than by overwriting it with spaces
+    private static final boolean ANSI = !WINDOWS && TERM != null && !TERM.equals("dumb");
+
+    private final ProgressRegistry registry;
+    private final PrintStream out;
+    private final String prefix;
+    private final boolean statusLine;
+    private final boolean inPlace;
+    private final long summaryIntervalNanos;
+    private final int width;
+    @Nullable
+    private final PrintStream json;
+
+    // Only accessed by the dispatcher thread
+    private final Map<String, BarState> bars = new LinkedHashMap<>();
+    private long lastOutput = System.nanoTime();
+    private long lastJsonProgress;
+    private boolean progressChanged;
+    // The status line currently on the console. Guarded by this, as printAbove can be called from any thread.
+    @Nullable
+    private String drawnLine;
+    private int drawnLength;
+
+    /**
+     * @param out The console, where the status line and the other lines are written.
+     * @param prefix Prepended to every line other than the status line.
+     * @param statusLine Whether to show progress on the console, as opposed to only the JSON lines.
+     * @param json Where to write JSON lines, or {@code null} not to.
+     */
+    HeadlessProgress(
+        ProgressRegistry registry, PrintStream out, String prefix,
+        boolean statusLine, long summaryIntervalMs, @Nullable PrintStream json
+    ) {
+        this.registry = registry;
+        this.out = out;
+        this.prefix = prefix;
+        this.statusLine = statusLine;
+        // Terminals that can't do either way of redrawing the line get summary lines
+        inPlace = System.console() != null && (ANSI || WINDOWS);
+        summaryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(summaryIntervalMs);
+        width = getTerminalWidth();
+        this.json = json;
+        writeJson("start", null, null);
+    }
+
+    private static int getTerminalWidth() {
+        try {
+            return Integer.parseInt(System.getenv("COLUMNS"));
+        } catch (NumberFormatException e) {
+            return 80;
+        }
+    }
+
+    @Override
+    public void accept(List<Object[]> batch) {
+        final long now = System.nanoTime();
+        for (final Object[] event : batch) {
+            switch ((int)event[0]) {
+                case ListenerDispatcher.BAR_OPENED: {
+                    final String name = (String)event[1];
+                    final BarState bar = new BarState((long)event[2], now);
+                    bars.put(name, bar);
+                    writeJson("open", name, bar);
+                    progressChanged = true;
+                    break;
+                }
+                case ListenerDispatcher.BAR_PROGRESS: {
+                    final BarState bar = bars.get((String)event[1]);
+                    if (bar != null) {
+                        bar.value = (long)event[2];
+                        progressChanged = true;
+                    }
+                    break;
+                }
+                case ListenerDispatcher.BAR_CLOSED: {
+                    final String name = (String)event[1];
+                    final BarState bar = bars.remove(name);
+                    if (bar != null) {
+                        finished(name, bar, now);
+                    }
+                    break;
+                }
+                case ListenerDispatcher.SCREEN_CLOSED:
+                    done();
+                    return;
+            }
+        }
+
+        if (statusLine) {
+            if (inPlace && now - lastOutput >= REDRAW_INTERVAL_NANOS) {
+                drawStatusLine();
+                lastOutput = now;
+            } else if (!inPlace && progressChanged && now - lastOutput >= summaryIntervalNanos) {
+                final String summary = getSummary();
+                if (summary != null) {
+                    printLine(summary);
+                }
+                lastOutput = now;
+            }
+            progressChanged = false;
+        }
+        if (json != null && now - lastJsonProgress >= JSON_PROGRESS_INTERVAL_NANOS) {
+            for (final Map.Entry<String, BarState> bar : bars.entrySet()) {
+                if (bar.getValue().value != bar.getValue().jsonValue) {
+                    writeJson("progress", bar.getKey(), bar.getValue());
+                }
+            }
+            lastJsonProgress = now;
+        }
+        if (json != null) {
+            json.flush();
+        }
+    }
+
+    private void finished(String name, BarState bar, long now) {
+        if (statusLine) {
+            printLine(
+                "Finished '" + name + "' (" + bar.value + '/' + bar.max + ") in " +
+                    TimeUnit.NANOSECONDS.toMillis(now - bar.openedAt) + " ms"
+            );
+        }
+        if (json != null) {
+            writeJson("close", name, bar, ",\"ms\":" + TimeUnit.NANOSECONDS.toMillis(now - bar.openedAt));
+        }
+    }
+
+    private void done() {
+        if (statusLine) {
+            printLine("Done loading in " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms since launch");
+        }
+        if (json != null) {
+            writeJson("done", null, null);
+            if (json == System.out) {
+                json.flush();
+            } else {
+                json.close();
+            }
+        }
+    }
+
+    // The status line is drawn again with the next progress, if there's still any
+    private synchronized void printLine(String line) {
+        clearStatusLine();
+        out.println(prefix + line);
+        out.flush();
+    }
+
+    /**
+     * Runs the given write to the console with the status line cleared, and draws it again afterwards. Can be called
+     * from any thread.
+     */
+    synchronized void printAbove(Runnable write) {
+        final String line = drawnLine;
+        clearStatusLine();
+        write.run();
+        out.flush();
+        if (line != null) {
+            drawStatusLine(line);
+        }
+    }
+
+    @Nullable
+    private String getSummary() {
+        if (bars.isEmpty()) {
+            return null;
+        }
+        final StringJoiner summary = new StringJoiner(" | ", "Loading ", "");
+        for (final Map.Entry<String, BarState> entry : bars.entrySet()) {
+            final BarState bar = entry.getValue();
+            final StringBuilder part = new StringBuilder().append('\'').append(entry.getKey()).append("' ")
+                .append(bar.value).append('/').append(bar.max);
+            if (bar.max > 0) {
+                part.append(" (").append(Math.min(100, bar.value * 100 / bar.max)).append("%)");
+            }
+            final ProgressRegistry.Bar registryBar = registry.get(entry.getKey());
+            final String detail = registryBar != null ? registryBar.getDetail() : null;
+            if (detail != null) {
+                part.append(" \u2014 ").append(detail);
+            }
+            summary.add(part);
+        }
+        return summary.toString();
+    }
+
+    private void drawStatusLine() {
+        String line = getSummary();
+        if (line == null) {
+            clearStatusLine();
+            return;
+        }
+        if (line.length() >= width) {
+            line = line.substring(0, width - 1);
+        }
+        drawStatusLine(line);
+    }
+
+    private synchronized void drawStatusLine(String line) {
+        if (ANSI) {
+            out.print("\r\033[2K" + line);
+        } else {
+            // Overwrite whatever is left of the previous line
+            final StringBuilder padded = new StringBuilder("\r").append(line);
+            for (int i = line.length(); i < drawnLength; i++) {
+                padded.append(' ');
+            }
+            out.print(padded);
+        }
+        out.flush();
+        drawnLine = line;
+        drawnLength = line.length();
+    }
+
+    private synchronized void clearStatusLine() {
+        drawnLine = null;
+        if (drawnLength == 0) return;
+        if (ANSI) {
+            out.print("\r\033[2K");
+        } else {
+            final StringBuilder blank = new StringBuilder("\r");
+            for (int i = 0; i < drawnLength; i++) {
+                blank.append(' ');
+            }
+            out.print(blank.append('\r'));
+        }
+        out.flush();
+        drawnLength = 0;
+    }
+
+    private void writeJson(String event, @Nullable String name, @Nullable BarState bar) {
+        writeJson(event, name, bar, "");
+    }
+
+    private void writeJson(String event, @Nullable String name, @Nullable BarState bar, String extra) {
+        if (json == null) return;
+        final StringWriter line = new StringWriter();
+        line.write("{\"t\":" + ManagementFactory.getRuntimeMXBean().getUptime() + ",\"event\":\"" + event + '"');
+        if (name != null && bar != null) {
+            line.write(",\"bar\":");
+            try {
+                StartupTrace.writeString(line, name);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            line.write(",\"value\":" + bar.value + ",\"max\":" + bar.max);
+            bar.jsonValue = bar.value;
+        }
+        line.write(extra);
+        line.write('}');
+        json.println(line);
+    }
+
+    private static final class BarState {
+        final long max;
+        final long openedAt;
+        long value;
+        long jsonValue;
+
+        BarState(long max, long openedAt) {
+            this.max = max;
+            this.openedAt = openedAt;
+        }
+    }
+}
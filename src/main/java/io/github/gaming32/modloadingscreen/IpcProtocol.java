@@ -0,0 +1,45 @@
+package io.github.gaming32.modloadingscreen;
+
+/**
+ * Constants shared by {@link IpcWriter} and {@link IpcReader}.
+ *
+ * <p>Version 1 of the protocol is a sequence of messages, each one being a message id byte, an argument count byte,
+ * and that many {@link java.io.DataOutput#writeUTF UTF} strings.
+ *
+ * <p>Version 2 starts with {@link #MAGIC} followed by the version byte, and is then a sequence of frames. Each frame
+ * is a varint length followed by that many bytes of messages. A message is a varint message id followed by its
+ * arguments: numbers are varints, and strings are a varint reference into a per-connection string table. A reference
+ * of {@code 0} introduces a new string (a varint byte length followed by UTF-8), which is assigned the next id,
+ * starting at {@code 1}.
+ */
+final class IpcProtocol {
+    // Chosen so that it can never be confused with a version 1 message id
+    static final byte[] MAGIC = {'M', 'L', 'S'};
+    static final int V1 = 1;
+    static final int V2 = 2;
+    static final int LATEST_VERSION = V2;
+
+    static final int BEFORE_ENTRYPOINT_TYPE = 0;
+    static final int BEFORE_SINGLE_ENTRYPOINT = 1;
+    static final int AFTER_ENTRYPOINT_TYPE = 2;
+    static final int MEMORY_USAGE = 3;
+    static final int CLOSE = 4;
+    // Version 2 only. Supersedes MEMORY_USAGE with the full sample from MemoryMonitor.
+    static final int MEMORY_STATS = 5;
+    // How long an entrypoint type and each of its entrypoints are expected to take, in microseconds. Only sent when
+    // there is a launch history to go by.
+    static final int TYPE_ESTIMATE = 6;
+    static final int ENTRYPOINT_ESTIMATE = 7;
+    // A sample from ClassLoadProbe
+    static final int CLASS_LOADING = 8;
+    // A sample from MixinProbe
+    static final int MIXIN_STATS = 9;
+    // Custom progress bars from the API, identified by the id they were given in the game. The progress is only sent
+    // when it has changed since the writer thread last looked at it.
+    static final int CUSTOM_BAR_OPEN = 10;
+    static final int CUSTOM_BAR_PROGRESS = 11;
+    static final int CUSTOM_BAR_CLOSE = 12;
+
+    private IpcProtocol() {
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes IPC messages sent by an {@link IpcWriter}. The protocol version is detected from the start of the stream,
+ * so IPC servers that only speak {@link IpcProtocol#V1} are still supported.
+ *
+ * @see IpcProtocol
+ */
+final class IpcReader {
+    private final DataInputStream in;
+    private final int version;
+    private final List<String> strings = new ArrayList<>();
+    private byte[] frame = new byte[1024];
+    private int frameSize;
+    private int framePos;
+    private int firstV1Message = -1;
+
+    IpcReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        final int first = this.in.readUnsignedByte();
+        if (first != IpcProtocol.MAGIC[0]) {
+            version = IpcProtocol.V1;
+            firstV1Message = first;
+            return;
+        }
+        for (int i = 1; i < IpcProtocol.MAGIC.length; i++) {
+            if (this.in.readUnsignedByte() != IpcProtocol.MAGIC[i]) {
+                throw new IOException("Invalid IPC header");
+            }
+        }
+        version = this.in.readUnsignedByte();
+        if (version > IpcProtocol.LATEST_VERSION) {
+            throw new IOException("Unsupported IPC protocol version " + version);
+        }
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Reads the id of the next message. Its arguments must then be read in order with {@link #readString} and
+     * {@link #readLong}.
+     */
+    int nextMessage() throws IOException {
+        if (version == IpcProtocol.V1) {
+            final int id;
+            if (firstV1Message != -1) {
+                id = firstV1Message;
+                firstV1Message = -1;
+            } else {
+                id = in.readUnsignedByte();
+            }
+            in.readUnsignedByte(); // Argument count. The arguments of each message are already known.
+            return id;
+        }
+        if (framePos >= frameSize) {
+            readFrame();
+        }
+        return (int)readVarLong();
+    }
+
+    String readString() throws IOException {
+        if (version == IpcProtocol.V1) {
+            return in.readUTF();
+        }
+        final int ref = (int)readVarLong();
+        if (ref != 0) {
+            return strings.get(ref - 1);
+        }
+        final int length = (int)readVarLong();
+        if (framePos + length > frameSize) {
+            throw new EOFException("String extends past end of frame");
+        }
+        final String value = new String(frame, framePos, length, StandardCharsets.UTF_8);
+        framePos += length;
+        strings.add(value);
+        return value;
+    }
+
+    long readLong() throws IOException {
+        if (version == IpcProtocol.V1) {
+            return Long.parseLong(in.readUTF());
+        }
+        return readVarLong();
+    }
+
+    private void readFrame() throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = in.readUnsignedByte();
+            length |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        if (length > frame.length) {
+            frame = new byte[Math.max(length, frame.length * 2)];
+        }
+        in.readFully(frame, 0, length);
+        frameSize = length;
+        framePos = 0;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (framePos >= frameSize) {
+                throw new EOFException("Message extends past end of frame");
+            }
+            final byte b = frame[framePos++];
+            value |= (long)(b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes IPC messages for the IPC client. With {@link IpcProtocol#V2}, messages are batched into a frame that is
+ * only written to the underlying stream when {@link #flush} is called.
+ *
+ * @see IpcProtocol
+ */
+final class IpcWriter {
+    private final OutputStream out;
+    private final int version;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private byte[] frame = new byte[1024];
+    private int frameSize;
+    private final byte[] lengthBuffer = new byte[5];
+
+    IpcWriter(OutputStream out, int version) throws IOException {
+        this.out = version == IpcProtocol.V1 ? new DataOutputStream(out) : out;
+        this.version = version;
+        if (version != IpcProtocol.V1) {
+            out.write(IpcProtocol.MAGIC);
+            out.write(version);
+        }
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Writes a message. Arguments must be either {@link String}s or {@link Number}s.
+     */
+    void write(int id, Object... args) throws IOException {
+        if (version == IpcProtocol.V1) {
+            final DataOutputStream dataOut = (DataOutputStream)out;
+            dataOut.writeByte(id);
+            dataOut.writeByte(args.length);
+            for (final Object arg : args) {
+                dataOut.writeUTF(arg.toString());
+            }
+            dataOut.flush();
+            return;
+        }
+        writeVarLong(id);
+        for (final Object arg : args) {
+            if (arg instanceof String) {
+                writeStringRef((String)arg);
+            } else {
+                writeVarLong(((Number)arg).longValue());
+            }
+        }
+    }
+
+    /**
+     * Writes a message stored in a {@link Message}, which, unlike {@link #write(int, Object...)}, doesn't need its
+     * numbers boxed.
+     */
+    void write(Message message) throws IOException {
+        if (version == IpcProtocol.V1) {
+            final DataOutputStream dataOut = (DataOutputStream)out;
+            dataOut.writeByte(message.id);
+            dataOut.writeByte(message.argCount);
+            for (int i = 0; i < message.argCount; i++) {
+                dataOut.writeUTF(message.isNumber(i) ? Long.toString(message.numbers[i]) : message.strings[i]);
+            }
+            dataOut.flush();
+            return;
+        }
+        writeVarLong(message.id);
+        for (int i = 0; i < message.argCount; i++) {
+            if (message.isNumber(i)) {
+                writeVarLong(message.numbers[i]);
+            } else {
+                writeStringRef(message.strings[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending frame, if any, to the underlying stream and flushes it.
+     */
+    void flush() throws IOException {
+        if (frameSize == 0) return;
+        int lengthSize = 0;
+        for (int value = frameSize; ; value >>>= 7) {
+            if ((value & ~0x7f) == 0) {
+                lengthBuffer[lengthSize++] = (byte)value;
+                break;
+            }
+            lengthBuffer[lengthSize++] = (byte)((value & 0x7f) | 0x80);
+        }
+        out.write(lengthBuffer, 0, lengthSize);
+        out.write(frame, 0, frameSize);
+        out.flush();
+        frameSize = 0;
+    }
+
+    void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeStringRef(String value) {
+        final Integer ref = strings.get(value);
+        if (ref != null) {
+            writeVarLong(ref);
+            return;
+        }
+        strings.put(value, strings.size() + 1);
+        writeVarLong(0);
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, frame, frameSize, bytes.length);
+        frameSize += bytes.length;
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7fL) != 0) {
+            frame[frameSize++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        frame[frameSize++] = (byte)value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (frameSize + extra > frame.length) {
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, frameSize + extra));
+        }
+    }
+
+    /**
+     * A reusable message, whose arguments are each either a {@link String} or a {@code long}.
+     */
+    static final class Message {
+        static final int MAX_ARGS = 4;
+
+        final String[] strings = new String[MAX_ARGS];
+        final long[] numbers = new long[MAX_ARGS];
+        int id;
+        int argCount;
+        // Bit i is set if argument i is a number
+        private int numberMask;
+
+        Message reset(int id) {
+            this.id = id;
+            argCount = 0;
+            numberMask = 0;
+            return this;
+        }
+
+        Message add(String value) {
+            strings[argCount++] = value;
+            return this;
+        }
+
+        Message add(long value) {
+            numberMask |= 1 << argCount;
+            numbers[argCount++] = value;
+            return this;
+        }
+
+        /**
+         * @param args Either {@link String}s or {@link Number}s
+         */
+        Message set(int id, Object... args) {
+            if (args.length > MAX_ARGS) {
+                throw new IllegalArgumentException("Too many arguments: " + args.length);
+            }
+            reset(id);
+            for (final Object arg : args) {
+                if (arg instanceof String) {
+                    add((String)arg);
+                } else {
+                    add(((Number)arg).longValue());
+                }
+            }
+            return this;
+        }
+
+        boolean isNumber(int index) {
+            return (numberMask & 1 << index) != 0;
+        }
+    }
+}
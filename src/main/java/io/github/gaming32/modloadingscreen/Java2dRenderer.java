@@ -0,0 +1,380 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Draws the loading screen itself onto a single {@link Canvas} with a {@link BufferStrategy}, instead of laying out
+ * Swing components, so that it needs neither FlatLaf nor most of Swing. Nothing is laid out: the memory bar and status
+ * lines are drawn at the top, over the background, and the progress bars from the bottom up. Only as many bars as fit
+ * are drawn, so a frame costs about the same no matter how many bars are open.
+ *
+ * <p>Text is drawn from a cache of glyph images, and bars from cached track and fill images, so that drawing a frame
+ * is mostly image copies. Frames are drawn on a thread of the renderer's own, not the EDT.
+ */
+final class Java2dRenderer {
+    private static final int MARGIN = 8;
+    private static final int BAR_HEIGHT = 22;
+    private static final int ROW_HEIGHT = BAR_HEIGHT + 4;
+    private static final int LINE_HEIGHT = 20;
+    private static final int BAR_ARC = 6;
+    // The colors of FlatDarkLaf, which the Swing renderer uses
+    private static final Color BACKGROUND = new Color(0x3c3f41);
+    private static final Color TRACK = new Color(0x555555);
+    private static final Color FILL = new Color(0x4b6eaf);
+    private static final Color SHADE = new Color(0, 0, 0, 0x90);
+    private static final Font FONT = new Font(Font.DIALOG, Font.PLAIN, 15);
+
+    final int width;
+    final int height;
+    private final int barWidth;
+    private final GlyphCache glyphs;
+    private final BufferedImage track;
+    private final BufferedImage fill;
+    private final StringBuilder text = new StringBuilder();
+    @Nullable
+    private volatile Image background;
+    private volatile boolean backgroundChanged;
+
+    // Only set for a renderer with a window, by open
+    private Frame frame;
+    private BufferStrategy strategy;
+    private Thread thread;
+    private volatile boolean closed;
+
+    // The latest state passed to render, redrawn when the background changes or the buffers are lost. Only accessed
+    // by the render thread.
+    private ProgressRegistry.Bar[] lastBars = new ProgressRegistry.Bar[0];
+    private double lastMemoryFraction;
+    @Nullable
+    private String lastMemoryLabel;
+    private String[] lastStatusLines = new String[0];
+
+    /**
+     * Creates a renderer without a window, which can only {@link #paint}.
+     *
+     * @param config The configuration of the screen the images will be drawn on, so that the cached images can be
+     *               copied without conversion, or {@code null} if there isn't one
+     */
+    Java2dRenderer(int width, int height, @Nullable GraphicsConfiguration config) {
+        this.width = width;
+        this.height = height;
+        barWidth = width - 2 * MARGIN;
+        glyphs = new GlyphCache(FONT, config);
+        track = createBarImage(config, barWidth, TRACK);
+        fill = createBarImage(config, barWidth, FILL);
+    }
+
+    /**
+     * Opens a window and starts the thread that draws it.
+     *
+     * @param tick Called by the render thread every frame, and expected to call {@link #render} if anything changed
+     * @param onFirstFrame Called once the window is shown
+     */
+    static Java2dRenderer open(
+        String title, @Nullable Image icon, int width, int height, int frameRate,
+        Runnable tick, Runnable onFirstFrame, BiConsumer<String, Throwable> errorHandler
+    ) {
+        final Frame frame = new Frame(title);
+        frame.setResizable(false);
+        if (icon != null) {
+            frame.setIconImage(icon);
+        }
+        frame.setLayout(null);
+        final Canvas canvas = new Canvas();
+        canvas.setIgnoreRepaint(true);
+        frame.add(canvas);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                System.exit(0);
+            }
+
+            @Override
+            public void windowOpened(WindowEvent e) {
+                onFirstFrame.run();
+            }
+        });
+        // The insets are only known once the frame has a peer
+        frame.addNotify();
+        final Insets insets = frame.getInsets();
+        canvas.setBounds(insets.left, insets.top, width, height);
+        frame.setSize(width + insets.left + insets.right, height + insets.top + insets.bottom);
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+        canvas.createBufferStrategy(2);
+
+        final Java2dRenderer renderer = new Java2dRenderer(width, height, canvas.getGraphicsConfiguration());
+        renderer.frame = frame;
+        renderer.strategy = canvas.getBufferStrategy();
+        renderer.thread = new Thread(
+            () -> renderer.run(TimeUnit.SECONDS.toNanos(1L) / frameRate, tick, errorHandler), "LoadingScreenRenderer"
+        );
+        renderer.thread.setDaemon(true);
+        renderer.thread.start();
+        return renderer;
+    }
+
+    /**
+     * Sets the image drawn behind everything else. May be called from any thread.
+     */
+    void setBackground(BufferedImage image) {
+        final GraphicsConfiguration config = glyphs.config;
+        if (config != null) {
+            // Converted once, instead of on every frame
+            final BufferedImage compatible = config.createCompatibleImage(image.getWidth(), image.getHeight());
+            final Graphics2D g = compatible.createGraphics();
+            try {
+                g.drawImage(image, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            background = compatible;
+        } else {
+            background = image;
+        }
+        backgroundChanged = true;
+    }
+
+    /**
+     * Draws a frame to the window. Only called by the render thread.
+     *
+     * @param memoryFraction How much of the heap is used, from 0 to 1
+     * @param memoryLabel The text of the memory bar, or {@code null} not to show it
+     * @param statusLines Lines of text shown under the memory bar. Entries may be {@code null}.
+     */
+    void render(
+        ProgressRegistry.Bar[] bars, double memoryFraction, @Nullable String memoryLabel, String... statusLines
+    ) {
+        lastBars = bars;
+        lastMemoryFraction = memoryFraction;
+        lastMemoryLabel = memoryLabel;
+        lastStatusLines = statusLines;
+        draw();
+    }
+
+    /**
+     * Stops the render thread, which then closes the window. May be called from any thread.
+     */
+    void close() {
+        closed = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run(long frameNanos, Runnable tick, BiConsumer<String, Throwable> errorHandler) {
+        try {
+            while (!closed) {
+                final long frameStart = System.nanoTime();
+                try {
+                    tick.run();
+                    if (backgroundChanged || strategy.contentsLost()) {
+                        draw();
+                    }
+                } catch (RuntimeException e) {
+                    errorHandler.accept("Failed to draw loading screen", e);
+                }
+                LockSupport.parkNanos(this, frameNanos - (System.nanoTime() - frameStart));
+            }
+        } finally {
+            frame.dispose();
+        }
+    }
+
+    private void draw() {
+        backgroundChanged = false;
+        final long now = System.nanoTime();
+        do {
+            do {
+                final Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
+                try {
+                    paint(g, lastBars, now, lastMemoryFraction, lastMemoryLabel, lastStatusLines);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    /**
+     * Draws a whole frame. Only called by one thread at a time.
+     *
+     * @see #render
+     */
+    void paint(
+        Graphics2D g, ProgressRegistry.Bar[] bars, long now,
+        double memoryFraction, @Nullable String memoryLabel, String... statusLines
+    ) {
+        final Image background = this.background;
+        if (background != null) {
+            g.drawImage(background, 0, 0, width, height, null);
+        } else {
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, width, height);
+        }
+
+        int top = MARGIN;
+        if (memoryLabel != null) {
+            text.setLength(0);
+            text.append(memoryLabel);
+            drawBar(g, top, memoryFraction);
+            top += ROW_HEIGHT;
+        }
+        for (final String line : statusLines) {
+            if (line == null) continue;
+            text.setLength(0);
+            text.append(line);
+            drawLine(g, top);
+            top += LINE_HEIGHT;
+        }
+
+        // The newest bars are at the bottom, like in the Swing renderer, and the oldest ones are left out if there
+        // isn't room for all of them
+        final int rows = Math.max(1, (height - MARGIN - top) / ROW_HEIGHT);
+        final int shown = bars.length > rows ? rows - 1 : bars.length;
+        int y = height - MARGIN - BAR_HEIGHT;
+        for (int i = bars.length - 1; i >= bars.length - shown; i--) {
+            final ProgressRegistry.Bar bar = bars[i];
+            text.setLength(0);
+            ActualLoadingScreen.appendLabel(text, bar, now);
+            drawBar(g, y, bar.getFraction(now));
+            y -= ROW_HEIGHT;
+        }
+        if (shown < bars.length) {
+            text.setLength(0);
+            text.append("and ").append(bars.length - shown).append(" more");
+            drawLine(g, y + BAR_HEIGHT - LINE_HEIGHT);
+        }
+    }
+
+    // Draws a bar with text centered on it
+    private void drawBar(Graphics2D g, int y, double fraction) {
+        g.drawImage(track, MARGIN, y, null);
+        final int filled = (int)(Math.max(0.0, Math.min(1.0, fraction)) * barWidth);
+        if (filled > 0) {
+            g.drawImage(fill, MARGIN, y, MARGIN + filled, y + BAR_HEIGHT, 0, 0, filled, BAR_HEIGHT, null);
+        }
+        final int textWidth = glyphs.width(text);
+        glyphs.draw(
+            g, text,
+            MARGIN + Math.max(0, (barWidth - textWidth) / 2), y + (BAR_HEIGHT - glyphs.height) / 2,
+            MARGIN + barWidth
+        );
+    }
+
+    // Draws a line of text on a shaded strip, so that it can be read on any background
+    private void drawLine(Graphics2D g, int y) {
+        g.setColor(SHADE);
+        g.fillRect(MARGIN, y, Math.min(glyphs.width(text) + 8, barWidth), LINE_HEIGHT);
+        glyphs.draw(g, text, MARGIN + 4, y + (LINE_HEIGHT - glyphs.height) / 2, MARGIN + barWidth);
+    }
+
+    private static BufferedImage createBarImage(@Nullable GraphicsConfiguration config, int width, Color color) {
+        final BufferedImage image = config != null
+            ? config.createCompatibleImage(width, BAR_HEIGHT, Transparency.TRANSLUCENT)
+            : new BufferedImage(width, BAR_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(color);
+            g.fillRoundRect(0, 0, width, BAR_HEIGHT, BAR_ARC, BAR_ARC);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * An image of each character, drawn the first time it's used. Characters are drawn one at a time, without kerning,
+     * which is fine for the short labels of the loading screen.
+     */
+    private static final class GlyphCache {
+        @Nullable
+        final GraphicsConfiguration config;
+        final int height;
+        private final Font font;
+        private final FontMetrics metrics;
+        // Lazily allocated in pages of 256 characters
+        private final BufferedImage[][] images = new BufferedImage[256][];
+        private final int[][] advances = new int[256][];
+
+        GlyphCache(Font font, @Nullable GraphicsConfiguration config) {
+            this.font = font;
+            this.config = config;
+            final Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+            try {
+                setHints(g);
+                metrics = g.getFontMetrics(font);
+            } finally {
+                g.dispose();
+            }
+            height = metrics.getHeight();
+        }
+
+        int width(CharSequence text) {
+            int width = 0;
+            for (int i = 0; i < text.length(); i++) {
+                width += advance(text.charAt(i));
+            }
+            return width;
+        }
+
+        /**
+         * Draws text with its top left corner at the given point, leaving out the characters that would go past
+         * {@code maxX}.
+         */
+        void draw(Graphics2D g, CharSequence text, int x, int y, int maxX) {
+            for (int i = 0; i < text.length(); i++) {
+                final char c = text.charAt(i);
+                final int advance = advance(c);
+                if (x + advance > maxX) return;
+                g.drawImage(images[c >>> 8][c & 0xff], x, y, null);
+                x += advance;
+            }
+        }
+
+        private int advance(char c) {
+            BufferedImage[] page = images[c >>> 8];
+            if (page == null) {
+                page = images[c >>> 8] = new BufferedImage[256];
+                advances[c >>> 8] = new int[256];
+            }
+            if (page[c & 0xff] == null) {
+                final int advance = metrics.charWidth(c);
+                // A little wider than the advance, for glyphs that overhang
+                final int imageWidth = Math.max(1, advance + metrics.getMaxDescent());
+                final BufferedImage image = config != null
+                    ? config.createCompatibleImage(imageWidth, height, Transparency.TRANSLUCENT)
+                    : new BufferedImage(imageWidth, height, BufferedImage.TYPE_INT_ARGB);
+                final Graphics2D g = image.createGraphics();
+                try {
+                    setHints(g);
+                    g.setFont(font);
+                    g.setColor(Color.WHITE);
+                    g.drawString(String.valueOf(c), 0, metrics.getAscent());
+                } finally {
+                    g.dispose();
+                }
+                page[c & 0xff] = image;
+                advances[c >>> 8][c & 0xff] = advance;
+            }
+            return advances[c >>> 8][c & 0xff];
+        }
+
+        private static void setHints(Graphics2D g) {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * How long each mod's entrypoints took in previous launches, used to weight the progress bars by expected time. Each
+ * duration is an exponentially weighted moving average, so that it follows gradual changes, and is thrown away when
+ * the mod's version changes. Entries for mods that haven't been seen for a while are dropped, and the store never holds
+ * more than {@link #MAX_ENTRIES} entries.
+ *
+ * <p>{@link #begin} and {@link #end} are called for every entrypoint, so they don't allocate anything once there's room
+ * for the launch's entrypoints, which {@link #reserve} makes ahead of time. The durations are only added to the
+ * history when it's next read.
+ *
+ * <p>This launch's totals are also what {@link LaunchLog} records for the startup report. Only the averages are saved
+ * here, as they're read before the first entrypoint, when a compact file that doesn't have to be replayed matters.
+ */
+final class LaunchHistory {
+    private static final int MAGIC = 0x4d4c5348; // MLSH
+    private static final int FORMAT_VERSION = 1;
+    static final int MAX_ENTRIES = 4096;
+    // Entries not seen for this many launches are dropped
+    static final int MAX_AGE = 20;
+    // Weight of the latest launch in the moving average
+    static final double SMOOTHING = 0.4;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    // The entrypoint each thread is currently running. Reused for each entrypoint.
+    private final ThreadLocal<Running> running = ThreadLocal.withInitial(Running::new);
+    // Entrypoints that have finished but haven't been added to entries and launchDurations yet
+    private String[] finishedTypes = new String[256];
+    private String[] finishedMods = new String[256];
+    private String[] finishedVersions = new String[256];
+    private long[] finishedNanos = new long[256];
+    private int finishedCount;
+    // How long each mod's entrypoints took in this launch, over all entrypoint types
+    private final Map<String, Long> launchDurations = new HashMap<>();
+    private int launch;
+
+    LaunchHistory() {
+    }
+
+    /**
+     * Loads the history from the given file, or returns an empty history if it doesn't exist or can't be read.
+     */
+    static LaunchHistory load(Path path) {
+        final LaunchHistory history = new LaunchHistory();
+        if (!Files.exists(path)) {
+            return history;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != FORMAT_VERSION) {
+                return history;
+            }
+            final int launch = in.readInt();
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String typeName = in.readUTF();
+                final String modId = in.readUTF();
+                final Entry entry = new Entry(in.readUTF(), in.readLong(), in.readInt());
+                history.entries.put(key(typeName, modId), entry);
+            }
+            history.launch = launch + 1;
+        } catch (IOException e) {
+            // Truncated or unreadable, so it's replaced with this launch's history when it's saved
+            history.entries.clear();
+        }
+        return history;
+    }
+
+    private static String key(String typeName, String modId) {
+        return typeName + '\0' + modId;
+    }
+
+    /**
+     * Returns how long the given mod's entrypoint is expected to take in nanoseconds, or {@code -1} if this version of
+     * the mod hasn't been seen before.
+     */
+    synchronized long getExpected(String typeName, String modId, String version) {
+        addFinished();
+        final Entry entry = entries.get(key(typeName, modId));
+        return entry != null && entry.version.equals(version) ? entry.nanos : -1;
+    }
+
+    /**
+     * Makes room for the given number of entrypoints to finish without allocating.
+     */
+    synchronized void reserve(int entrypoints) {
+        final int capacity = finishedCount + entrypoints;
+        if (capacity <= finishedNanos.length) return;
+        final int newCapacity = Math.max(capacity, finishedNanos.length * 2);
+        finishedTypes = Arrays.copyOf(finishedTypes, newCapacity);
+        finishedMods = Arrays.copyOf(finishedMods, newCapacity);
+        finishedVersions = Arrays.copyOf(finishedVersions, newCapacity);
+        finishedNanos = Arrays.copyOf(finishedNanos, newCapacity);
+    }
+
+    synchronized void begin(String typeName, String modId, String version) {
+        final long now = System.nanoTime();
+        final Running entrypoint = running.get();
+        end(entrypoint, now);
+        entrypoint.typeName = typeName;
+        entrypoint.modId = modId;
+        entrypoint.version = version;
+        entrypoint.start = now;
+    }
+
+    /**
+     * Finishes the current thread's entrypoint, if any.
+     */
+    synchronized void end() {
+        end(running.get(), System.nanoTime());
+    }
+
+    private void end(Running entrypoint, long now) {
+        if (entrypoint.typeName == null) return;
+        reserve(1);
+        finishedTypes[finishedCount] = entrypoint.typeName;
+        finishedMods[finishedCount] = entrypoint.modId;
+        finishedVersions[finishedCount] = entrypoint.version;
+        finishedNanos[finishedCount] = now - entrypoint.start;
+        finishedCount++;
+        entrypoint.typeName = null;
+    }
+
+    // In the order they finished, as later entrypoints of the same type and mod are added on to earlier ones
+    private void addFinished() {
+        for (int i = 0; i < finishedCount; i++) {
+            final long nanos = finishedNanos[i];
+            launchDurations.merge(finishedMods[i], nanos, Long::sum);
+            final String key = key(finishedTypes[i], finishedMods[i]);
+            final Entry old = entries.get(key);
+            if (old != null && old.version.equals(finishedVersions[i])) {
+                // A mod may provide more than one entrypoint of the same type, so the launch's total is averaged with
+                // the value from before this launch, once
+                final boolean seenThisLaunch = old.lastSeen == launch;
+                final long previous = seenThisLaunch ? old.previousNanos : old.nanos;
+                final long launchNanos = seenThisLaunch ? old.launchNanos + nanos : nanos;
+                final long newNanos = previous < 0
+                    ? launchNanos
+                    : (long)(previous * (1 - SMOOTHING) + launchNanos * SMOOTHING);
+                entries.put(key, new Entry(old.version, newNanos, launch, previous, launchNanos));
+            } else {
+                entries.put(key, new Entry(finishedVersions[i], nanos, launch, -1, nanos));
+            }
+            finishedTypes[i] = finishedMods[i] = finishedVersions[i] = null;
+        }
+        finishedCount = 0;
+    }
+
+    /**
+     * Returns how long each mod's entrypoints took in this launch in nanoseconds, by mod id.
+     */
+    synchronized Map<String, Long> getLaunchDurations() {
+        addFinished();
+        return new HashMap<>(launchDurations);
+    }
+
+    synchronized int size() {
+        addFinished();
+        return entries.size();
+    }
+
+    synchronized void save(Path path) throws IOException {
+        addFinished();
+        final List<Map.Entry<String, Entry>> kept = new ArrayList<>();
+        for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (launch - entry.getValue().lastSeen <= MAX_AGE) {
+                kept.add(entry);
+            }
+        }
+        if (kept.size() > MAX_ENTRIES) {
+            kept.sort(Comparator.comparingInt((Map.Entry<String, Entry> e) -> e.getValue().lastSeen).reversed());
+            kept.subList(MAX_ENTRIES, kept.size()).clear();
+        }
+
+        final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(launch);
+            out.writeInt(kept.size());
+            for (final Map.Entry<String, Entry> entry : kept) {
+                final int separator = entry.getKey().indexOf('\0');
+                out.writeUTF(entry.getKey().substring(0, separator));
+                out.writeUTF(entry.getKey().substring(separator + 1));
+                out.writeUTF(entry.getValue().version);
+                out.writeLong(entry.getValue().nanos);
+                out.writeInt(entry.getValue().lastSeen);
+            }
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class Entry {
+        final String version;
+        final long nanos;
+        final int lastSeen;
+        // Only for entries seen in this launch: the average from before it, or -1 if there wasn't one, and the total
+        // of this launch's entrypoints so far. Not saved.
+        final long previousNanos;
+        final long launchNanos;
+
+        Entry(String version, long nanos, int lastSeen) {
+            this(version, nanos, lastSeen, -1, 0);
+        }
+
+        Entry(String version, long nanos, int lastSeen, long previousNanos, long launchNanos) {
+            this.version = version;
+            this.nanos = nanos;
+            this.lastSeen = lastSeen;
+            this.previousNanos = previousNanos;
+            this.launchNanos = launchNanos;
+        }
+    }
+
+    private static final class Running {
+        // null if the thread isn't running an entrypoint
+        String typeName;
+        String modId;
+        String version;
+        long start;
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * An append-only log of the mod set and startup timings of previous launches. Each launch is a block of tab-separated
+ * lines: an {@code L} line with the time of the launch, how long it took, and how many {@code M} lines follow, each of
+ * which has a mod's id, version, and how long its entrypoints took. Blocks cut short by a crash are skipped when
+ * reading. Once the log holds {@link #COMPACT_AT} launches, it is rewritten with only the latest {@link #KEEP}.
+ *
+ * <p>The timings are the totals from {@link LaunchHistory#getLaunchDurations}, so both are measured once. They're kept
+ * apart from the history's averages because the report needs each launch as it was: the baseline is a median, which
+ * can't be had from a moving average, and the mod changes are against the whole mod set, not only the mods with
+ * entrypoints.
+ */
+final class LaunchLog {
+    static final int KEEP = 20;
+    static final int COMPACT_AT = 2 * KEEP;
+
+    private LaunchLog() {
+    }
+
+    static List<Launch> read(Path path) throws IOException {
+        final List<Launch> launches = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return launches;
+        }
+        Launch launch = null;
+        int remaining = 0;
+        for (final String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            final String[] parts = line.split("\t");
+            try {
+                if (parts[0].equals("L") && parts.length == 4) {
+                    launch = new Launch(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                    remaining = Integer.parseInt(parts[3]);
+                } else if (parts[0].equals("M") && parts.length == 4 && launch != null && remaining > 0) {
+                    launch.versions.put(parts[1], parts[2]);
+                    launch.entrypointMicros.put(parts[1], Long.parseLong(parts[3]));
+                    remaining--;
+                } else {
+                    launch = null;
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                launch = null;
+                continue;
+            }
+            if (launch != null && remaining == 0) {
+                launches.add(launch);
+                launch = null;
+            }
+        }
+        return launches;
+    }
+
+    /**
+     * Appends a launch to the log, compacting it if needed.
+     *
+     * @param previous The launches already in the log, as returned by {@link #read}.
+     */
+    static void append(Path path, Launch launch, List<Launch> previous) throws IOException {
+        if (previous.size() + 1 < COMPACT_AT) {
+            try (Writer writer = Files.newBufferedWriter(
+                path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+            )) {
+                write(writer, launch);
+            }
+            return;
+        }
+
+        final List<Launch> kept = new ArrayList<>(previous.subList(previous.size() - (KEEP - 1), previous.size()));
+        kept.add(launch);
+        final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            for (final Launch keptLaunch : kept) {
+                write(writer, keptLaunch);
+            }
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(Writer writer, Launch launch) throws IOException {
+        writer.write("L\t" + launch.timestamp + '\t' + launch.startupMillis + '\t' + launch.versions.size() + '\n');
+        for (final Map.Entry<String, String> mod : launch.versions.entrySet()) {
+            final Long micros = launch.entrypointMicros.get(mod.getKey());
+            writer.write(
+                "M\t" + mod.getKey() + '\t' + mod.getValue().replace('\t', ' ') + '\t' +
+                    (micros != null ? micros : 0L) + '\n'
+            );
+        }
+    }
+
+    static final class Launch {
+        final long timestamp;
+        final long startupMillis;
+        // Both keyed by mod id
+        final Map<String, String> versions = new LinkedHashMap<>();
+        final Map<String, Long> entrypointMicros = new HashMap<>();
+
+        Launch(long timestamp, long startupMillis) {
+            this.timestamp = timestamp;
+            this.startupMillis = startupMillis;
+        }
+    }
+}
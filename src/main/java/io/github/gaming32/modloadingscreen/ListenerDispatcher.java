@@ -0,0 +1,190 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Delivers loading screen events to the listeners added through the API, in batches on a dedicated thread, so that a
+ * slow listener can never hold up the thread that loads mods.
+ *
+ * <p>Opening and closing bars is rare, so those are queued by {@link ProgressRegistry} as they happen. Progress and
+ * memory samples change far more often, so the dispatcher thread reads their latest values once per batch instead.
+ * A bar's progress is always delivered between its opened and closed events.
+ *
+ * <p>Listeners are in the mod's class loader, so events are passed to them as {@code Object[]}s of JDK types. The first
+ * element is one of the event ids in this class, followed by the arguments listed for it.
+ */
+final class ListenerDispatcher implements ProgressRegistry.Listener {
+    // name, max
+    static final int BAR_OPENED = 0;
+    // name, progress
+    static final int BAR_PROGRESS = 1;
+    // name
+    static final int BAR_CLOSED = 2;
+    // A sample from MemoryMonitor, then the usage of each heap pool
+    static final int MEMORY_STATS = 3;
+    // No arguments. Always the last event.
+    static final int SCREEN_CLOSED = 4;
+
+    private static final long DISPATCH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+
+    private final Supplier<Map<String, Long>> poolUsage;
+    private final BiConsumer<String, Throwable> errorHandler;
+    private final Queue<Object[]> events = new ConcurrentLinkedQueue<>();
+    private final Queue<Consumer<List<Object[]>>> addedListeners = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<long[]> pendingMemoryStats = new AtomicReference<>();
+    private final Thread thread;
+
+    // Only accessed by the dispatcher thread
+    private final List<Consumer<List<Object[]>>> listeners = new CopyOnWriteArrayList<>();
+    // The open bars, and the progress that was last delivered for each of them
+    private final Map<ProgressRegistry.Bar, Long> openBars = new LinkedHashMap<>();
+    private long[] lastMemoryStats;
+
+    ListenerDispatcher(
+        ProgressRegistry registry,
+        Supplier<Map<String, Long>> poolUsage,
+        BiConsumer<String, Throwable> errorHandler
+    ) {
+        this.poolUsage = poolUsage;
+        this.errorHandler = errorHandler;
+        for (final ProgressRegistry.Bar bar : registry.setListener(this)) {
+            openBars.put(bar, 0L);
+        }
+        thread = new Thread(this::run, "LoadingScreenEvents");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void addListener(Consumer<List<Object[]>> listener) {
+        addedListeners.add(listener);
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void opened(ProgressRegistry.Bar bar) {
+        events.add(new Object[] {BAR_OPENED, bar});
+    }
+
+    @Override
+    public void closed(ProgressRegistry.Bar bar) {
+        events.add(new Object[] {BAR_CLOSED, bar});
+    }
+
+    /**
+     * @param sample A sample from {@link MemoryMonitor}
+     */
+    void memoryStats(long[] sample) {
+        pendingMemoryStats.set(sample);
+    }
+
+    /**
+     * Delivers the last batch, ending with {@link #SCREEN_CLOSED}, after which the dispatcher thread exits.
+     */
+    void screenClosed() {
+        events.add(new Object[] {SCREEN_CLOSED});
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (dispatch()) {
+            LockSupport.parkNanos(this, DISPATCH_INTERVAL_NANOS);
+        }
+    }
+
+    private boolean dispatch() {
+        // Listeners added since the last batch start with the bars that are already open
+        Consumer<List<Object[]>> added;
+        while ((added = addedListeners.poll()) != null) {
+            final List<Object[]> current = new ArrayList<>();
+            for (final Map.Entry<ProgressRegistry.Bar, Long> bar : openBars.entrySet()) {
+                current.add(new Object[] {BAR_OPENED, bar.getKey().name, bar.getKey().max});
+                if (bar.getValue() != 0L) {
+                    current.add(new Object[] {BAR_PROGRESS, bar.getKey().name, bar.getValue()});
+                }
+            }
+            if (lastMemoryStats != null) {
+                current.add(memoryEvent(lastMemoryStats));
+            }
+            if (deliver(added, current)) {
+                listeners.add(added);
+            }
+        }
+
+        final List<Object[]> batch = new ArrayList<>();
+        boolean screenClosed = false;
+        Object[] event;
+        while ((event = events.poll()) != null) {
+            final int id = (int)event[0];
+            if (id == SCREEN_CLOSED) {
+                screenClosed = true;
+                continue;
+            }
+            final ProgressRegistry.Bar bar = (ProgressRegistry.Bar)event[1];
+            if (id == BAR_OPENED) {
+                openBars.put(bar, 0L);
+                batch.add(new Object[] {BAR_OPENED, bar.name, bar.max});
+            } else {
+                final Long delivered = openBars.remove(bar);
+                if (delivered == null) continue;
+                addProgress(batch, bar, delivered);
+                batch.add(new Object[] {BAR_CLOSED, bar.name});
+            }
+        }
+        for (final Map.Entry<ProgressRegistry.Bar, Long> bar : openBars.entrySet()) {
+            final long progress = addProgress(batch, bar.getKey(), bar.getValue());
+            bar.setValue(progress);
+        }
+        final long[] memoryStats = pendingMemoryStats.getAndSet(null);
+        if (memoryStats != null) {
+            lastMemoryStats = memoryStats;
+            batch.add(memoryEvent(memoryStats));
+        }
+        if (screenClosed) {
+            batch.add(new Object[] {SCREEN_CLOSED});
+        }
+
+        if (!batch.isEmpty()) {
+            final List<Object[]> readOnlyBatch = Collections.unmodifiableList(batch);
+            for (final Consumer<List<Object[]>> listener : listeners) {
+                if (!deliver(listener, readOnlyBatch)) {
+                    listeners.remove(listener);
+                }
+            }
+        }
+        return !screenClosed;
+    }
+
+    private static long addProgress(List<Object[]> batch, ProgressRegistry.Bar bar, long delivered) {
+        final long progress = bar.get();
+        if (progress != delivered) {
+            batch.add(new Object[] {BAR_PROGRESS, bar.name, progress});
+        }
+        return progress;
+    }
+
+    private Object[] memoryEvent(long[] sample) {
+        return new Object[] {MEMORY_STATS, sample.clone(), poolUsage.get()};
+    }
+
+    // A listener that throws is removed, so that it can't flood the log
+    private boolean deliver(Consumer<List<Object[]>> listener, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            listener.accept(batch);
+            return true;
+        } catch (Throwable t) {
+            errorHandler.accept("Removed a loading screen listener that threw an exception", t);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package io.github.gaming32.modloadingscreen;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Monitors heap usage and garbage collection without a thread of its own. Samples are taken on the JVM's notification
+ * thread, when it pushes a {@link GarbageCollectorMXBean} notification or a {@link MemoryPoolMXBean} usage threshold
+ * notification, and published when a collection happened or usage moved by at least the configured threshold.
+ *
+ * <p>After each sample, the usage threshold of every pool that supports one is moved to the pool's usage plus the
+ * configured threshold, so that growth outside of collections is seen too. Usage only goes down in a collection, which
+ * is always sampled. The pool that most allocation goes to, the young generation, doesn't support usage thresholds, so
+ * the allocation rate is measured from the heap usage before and after each collection, which covers everything
+ * allocated in between.
+ *
+ * <p>Samples are {@code long[]}s indexed by the constants in this class. One is only allocated when it's published.
+ */
+final class MemoryMonitor {
+    static final int HEAP_USED = 0;
+    static final int HEAP_MAX = 1;
+    static final int GC_COUNT = 2;
+    static final int GC_TIME_MS = 3;
+    static final int ALLOCATION_RATE = 4;
+    static final int SAMPLE_SIZE = 5;
+
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long thresholdBytes;
+    private final Consumer<long[]> publisher;
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final List<MemoryPoolMXBean> thresholdPools = new ArrayList<>();
+    private final Set<String> heapPoolNames = new HashSet<>();
+    private final Map<NotificationEmitter, NotificationListener> listeners = new HashMap<>();
+    private volatile boolean closed;
+
+    // Guarded by this, as notifications aren't guaranteed to be delivered on a single thread
+    private long lastUsed;
+    private long lastPublishedUsed;
+    private long lastPublishedGcCount = -1;
+    private long allocated;
+    private long rateWindowStart = System.nanoTime();
+    private long rateWindowAllocated;
+    private long allocationRate;
+
+    private volatile long[] latest;
+
+    MemoryMonitor(long thresholdBytes, Consumer<long[]> publisher) {
+        this.thresholdBytes = Math.max(1, thresholdBytes);
+        this.publisher = publisher;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+                heapPoolNames.add(pool.getName());
+                if (pool.isUsageThresholdSupported()) {
+                    thresholdPools.add(pool);
+                }
+            }
+        }
+        lastUsed = memoryBean.getHeapMemoryUsage().getUsed();
+
+        for (final GarbageCollectorMXBean gcBean : gcBeans) {
+            if (gcBean instanceof NotificationEmitter) {
+                addListener((NotificationEmitter)gcBean);
+            }
+        }
+        if (!thresholdPools.isEmpty() && memoryBean instanceof NotificationEmitter) {
+            addListener((NotificationEmitter)memoryBean);
+        }
+
+        sample(false, -1, -1);
+    }
+
+    private void addListener(NotificationEmitter emitter) {
+        final NotificationListener listener = this::handleNotification;
+        emitter.addNotificationListener(listener, null, null);
+        listeners.put(emitter, listener);
+    }
+
+    /**
+     * Returns the last sample taken, or {@code null} if there hasn't been one yet.
+     */
+    long[] getLatest() {
+        return latest;
+    }
+
+    Map<String, Long> getPoolUsage() {
+        final Map<String, Long> result = new LinkedHashMap<>();
+        for (final MemoryPoolMXBean pool : heapPools) {
+            final MemoryUsage usage = pool.getUsage();
+            if (usage != null) {
+                result.put(pool.getName(), usage.getUsed());
+            }
+        }
+        return result;
+    }
+
+    void close() {
+        closed = true;
+        listeners.forEach((emitter, listener) -> {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (Exception ignored) {
+            }
+        });
+        synchronized (this) {
+            for (final MemoryPoolMXBean pool : thresholdPools) {
+                try {
+                    pool.setUsageThreshold(0);
+                } catch (RuntimeException ignored) {
+                }
+            }
+        }
+    }
+
+    private void handleNotification(Notification notification, Object handback) {
+        if (closed) return;
+        if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            sample(false, -1, -1);
+            return;
+        }
+        if (!GC_NOTIFICATION.equals(notification.getType())) return;
+        long usedBeforeGc = -1;
+        long usedAfterGc = -1;
+        try {
+            final CompositeData gcInfo = (CompositeData)((CompositeData)notification.getUserData()).get("gcInfo");
+            usedBeforeGc = sumHeapUsage((TabularData)gcInfo.get("memoryUsageBeforeGc"));
+            usedAfterGc = sumHeapUsage((TabularData)gcInfo.get("memoryUsageAfterGc"));
+        } catch (RuntimeException ignored) {
+            // Not HotSpot's notification format. The collection is still published, just without the exact
+            // allocation figures.
+        }
+        sample(true, usedBeforeGc, usedAfterGc);
+    }
+
+    private long sumHeapUsage(TabularData usages) {
+        long used = 0;
+        for (final Object row : usages.values()) {
+            final CompositeData entry = (CompositeData)row;
+            if (heapPoolNames.contains((String)entry.get("key"))) {
+                used += MemoryUsage.from((CompositeData)entry.get("value")).getUsed();
+            }
+        }
+        return used;
+    }
+
+    private synchronized void sample(boolean gcHappened, long usedBeforeGc, long usedAfterGc) {
+        if (gcHappened && usedBeforeGc >= 0 && usedAfterGc >= 0) {
+            allocated += Math.max(0, usedBeforeGc - lastUsed);
+            lastUsed = usedAfterGc;
+        }
+
+        final MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+        final long used = heap.getUsed();
+        allocated += Math.max(0, used - lastUsed);
+        lastUsed = used;
+
+        long gcCount = 0;
+        long gcTime = 0;
+        for (final GarbageCollectorMXBean gcBean : gcBeans) {
+            gcCount += Math.max(0, gcBean.getCollectionCount());
+            gcTime += Math.max(0, gcBean.getCollectionTime());
+        }
+
+        final long now = System.nanoTime();
+        if (now - rateWindowStart >= RATE_WINDOW_NANOS) {
+            allocationRate = (long)((allocated - rateWindowAllocated) * 1e9 / (now - rateWindowStart));
+            rateWindowStart = now;
+            rateWindowAllocated = allocated;
+        }
+
+        if (gcCount != lastPublishedGcCount || Math.abs(used - lastPublishedUsed) >= thresholdBytes) {
+            lastPublishedGcCount = gcCount;
+            lastPublishedUsed = used;
+            final long[] sample = new long[SAMPLE_SIZE];
+            sample[HEAP_USED] = used;
+            sample[HEAP_MAX] = heap.getMax() >= 0 ? heap.getMax() : heap.getCommitted();
+            sample[GC_COUNT] = gcCount;
+            sample[GC_TIME_MS] = gcTime;
+            sample[ALLOCATION_RATE] = allocationRate;
+            latest = sample;
+            publisher.accept(sample);
+        }
+        rearmThresholds();
+    }
+
+    private void rearmThresholds() {
+        if (closed) return;
+        for (final MemoryPoolMXBean pool : thresholdPools) {
+            final MemoryUsage usage = pool.getUsage();
+            if (usage == null) continue;
+            long threshold = usage.getUsed() + thresholdBytes;
+            if (usage.getMax() >= 0) {
+                threshold = Math.min(threshold, usage.getMax());
+            }
+            try {
+                pool.setUsageThreshold(threshold);
+            } catch (RuntimeException ignored) {
+                // The pool stopped supporting it, or its maximum changed
+            }
+        }
+    }
+}
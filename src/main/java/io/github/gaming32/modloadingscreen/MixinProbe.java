@@ -0,0 +1,132 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.extensibility.IMixinConfig;
+import org.spongepowered.asm.mixin.transformer.Config;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times how long Mixin spends transforming each target class. {@link #enter} and {@link #exit} are injected around the
+ * class loader's call to the Mixin transformer. Applying mixins often loads other classes, which are transformed in
+ * turn, so each target is only charged the time that wasn't spent transforming other classes.
+ *
+ * <p>Mixin doesn't say which configs it applied to a class, so the time of each target is split evenly between the
+ * configs that target it when the report is made. This class uses the Mixin API, so it must only be loaded in the game.
+ *
+ * <p>Samples are {@code long[]}s indexed by the constants in this class.
+ */
+final class MixinProbe {
+    static final int CLASSES = 0;
+    static final int MILLIS = 1;
+    static final int SAMPLE_SIZE = 2;
+
+    private static final int MAX_DEPTH = 64;
+    private static final String MOD_ID_DECORATION = "fabric-modId";
+
+    static volatile MixinProbe instance;
+
+    private static final ThreadLocal<TransformStack> TRANSFORM_STACK = ThreadLocal.withInitial(TransformStack::new);
+
+    private final Map<String, LongAdder> targetNanos = new ConcurrentHashMap<>();
+    private final LongAdder transformedClasses = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    static void enter(@Nullable String target) {
+        if (instance == null) return;
+        final TransformStack stack = TRANSFORM_STACK.get();
+        if (stack.depth < MAX_DEPTH) {
+            stack.starts[stack.depth] = System.nanoTime();
+            stack.children[stack.depth] = 0;
+            stack.targets[stack.depth] = target;
+        }
+        stack.depth++;
+    }
+
+    static void exit() {
+        final MixinProbe probe = instance;
+        if (probe == null) return;
+        final TransformStack stack = TRANSFORM_STACK.get();
+        if (stack.depth == 0) return;
+        final int depth = --stack.depth;
+        if (depth >= MAX_DEPTH) return;
+        final long total = System.nanoTime() - stack.starts[depth];
+        final long self = total - stack.children[depth];
+        if (depth > 0) {
+            stack.children[depth - 1] += total;
+        }
+        final String target = stack.targets[depth];
+        stack.targets[depth] = null;
+        if (target != null) {
+            probe.targetNanos.computeIfAbsent(target, k -> new LongAdder()).add(self);
+        }
+        probe.transformedClasses.increment();
+        probe.totalNanos.add(self);
+    }
+
+    long[] sample() {
+        final long[] sample = new long[SAMPLE_SIZE];
+        sample[CLASSES] = transformedClasses.sum();
+        sample[MILLIS] = TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+        return sample;
+    }
+
+    /**
+     * Returns the most expensive mixin configs for the startup report, along with the mod each one belongs to.
+     */
+    List<String> getReport(int maxConfigs) {
+        final Map<String, List<IMixinConfig>> configsByTarget = new HashMap<>();
+        for (final Config config : Mixins.getConfigs()) {
+            for (final String target : config.getConfig().getTargets()) {
+                configsByTarget.computeIfAbsent(target, k -> new ArrayList<>()).add(config.getConfig());
+            }
+        }
+
+        final Map<IMixinConfig, Long> configNanos = new HashMap<>();
+        final Map<IMixinConfig, Integer> configTargets = new HashMap<>();
+        long unattributedNanos = 0;
+        for (final Map.Entry<String, LongAdder> target : targetNanos.entrySet()) {
+            final List<IMixinConfig> configs = configsByTarget.get(target.getKey());
+            final long nanos = target.getValue().sum();
+            if (configs == null) {
+                unattributedNanos += nanos;
+                continue;
+            }
+            for (final IMixinConfig config : configs) {
+                configNanos.merge(config, nanos / configs.size(), Long::sum);
+                configTargets.merge(config, 1, Integer::sum);
+            }
+        }
+        final List<Map.Entry<IMixinConfig, Long>> sorted = new ArrayList<>(configNanos.entrySet());
+        sorted.sort(Map.Entry.<IMixinConfig, Long>comparingByValue().reversed());
+
+        final List<String> lines = new ArrayList<>();
+        final long[] sample = sample();
+        lines.add(
+            "Mixin processed " + sample[CLASSES] + " classes in " + sample[MILLIS] + " ms, " +
+                TimeUnit.NANOSECONDS.toMillis(unattributedNanos) + " ms of which were for classes no config targets"
+        );
+        for (final Map.Entry<IMixinConfig, Long> config : sorted.subList(0, Math.min(sorted.size(), maxConfigs))) {
+            final Object modId = config.getKey().hasDecoration(MOD_ID_DECORATION)
+                ? config.getKey().getDecoration(MOD_ID_DECORATION)
+                : "?";
+            lines.add(String.format(
+                "  %-48s %-24s %5d targets %6d ms",
+                config.getKey().getName(), modId,
+                configTargets.get(config.getKey()), TimeUnit.NANOSECONDS.toMillis(config.getValue())
+            ));
+        }
+        return lines;
+    }
+
+    private static final class TransformStack {
+        final long[] starts = new long[MAX_DEPTH];
+        final long[] children = new long[MAX_DEPTH];
+        final String[] targets = new String[MAX_DEPTH];
+        int depth;
+    }
+}
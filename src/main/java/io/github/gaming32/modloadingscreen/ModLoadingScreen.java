@@ -13,19 +13,32 @@ import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.*;
 
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
 import java.nio.file.Files;
-import java.util.ListIterator;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 public class ModLoadingScreen implements LanguageAdapter {
     private static final boolean RUNNING_ON_QUILT = FabricLoader.getInstance().isModLoaded("quilt_loader");
     private static final String ENTRYPOINT_UTILS = RUNNING_ON_QUILT
         ? "org/quiltmc/loader/impl/entrypoint/EntrypointUtils"
         : "net/fabricmc/loader/impl/entrypoint/EntrypointUtils";
-    private static final String ENTRYPOINT_CONTAINER = "net/fabricmc/loader/api/entrypoint/EntrypointContainer";
-    private static final String ENTRYPOINT_CONTAINER_IMPL = "net/fabricmc/loader/impl/entrypoint/EntrypointContainerImpl";
-    private static final String MOD_CONTAINER = "net/fabricmc/loader/api/ModContainer";
-    private static final String MOD_METADATA = "net/fabricmc/loader/api/metadata/ModMetadata";
+    private static final String MIXIN_TRANSFORMER = "org/spongepowered/asm/mixin/transformer/IMixinTransformer";
+    private static final String KNOT_CLASS_DELEGATE = RUNNING_ON_QUILT
+        ? "org/quiltmc/loader/impl/launch/knot/KnotClassDelegate"
+        : "net/fabricmc/loader/impl/launch/knot/KnotClassDelegate";
+    // Changes whenever instrumentClassDelegate does, so that older patched copies aren't used from the cache
+    private static final int CLASS_DELEGATE_FORMAT = 1;
     public static final String ACTUAL_LOADING_SCREEN = "io/github/gaming32/modloadingscreen/ActualLoadingScreen";
+    // Entrypoints are tracked through EntrypointProxies instead, if they're enabled in the config
+    private static final boolean DISABLE_AGENT = Boolean.getBoolean("mod-loading-screen.disableAgent");
+    // The same as ActualLoadingScreen.CACHE_DIR, which can't be used from this class loader
+    private static final Path CACHE_DIR = FabricLoader.getInstance().getGameDir().resolve(".cache/mod-loading-screen");
 
     @Override
     @SuppressWarnings("unchecked")
@@ -62,135 +75,272 @@ public class ModLoadingScreen implements LanguageAdapter {
                 .orElseThrow(AssertionError::new)
         );
 
-        Methods.invoke(null, Methods.getDeclaredMethod(
-            ClassLoaders.defineClass(ClassLoader.getSystemClassLoader(), ACTUAL_LOADING_SCREEN.replace('/', '.'), alsData),
-            "startLoadingScreen"
+        final Class<?> actualLoadingScreen =
+            ClassLoaders.defineClass(ClassLoader.getSystemClassLoader(), ACTUAL_LOADING_SCREEN.replace('/', '.'), alsData);
+
+        final String modVersion = FabricLoader.getInstance()
+            .getModContainer("mod-loading-screen")
+            .orElseThrow(AssertionError::new)
+            .getMetadata().getVersion().getFriendlyString();
+
+        // Attaching the agent can take a few hundred milliseconds, so it's done while the loading screen opens. Waiting
+        // for it before this returns guarantees that EntrypointUtils is patched before the loader first invokes it.
+        // The class loading and Mixin probes don't have to be in place by then, so they're set up on the same thread
+        // afterwards, once startLoadingScreen has loaded the config they depend on.
+        final CompletableFuture<Instrumentation> agent = DISABLE_AGENT ? null : new CompletableFuture<>();
+        final CountDownLatch screenStarted = new CountDownLatch(1);
+        final long[] waitNanos = new long[1];
+        if (agent != null) {
+            final Thread agentThread = new Thread(() -> {
+                final long start = System.nanoTime();
+                final Instrumentation instrumentation;
+                try {
+                    instrumentation = Agents.getInstrumentation();
+                    retransform(
+                        instrumentation, ENTRYPOINT_UTILS, modVersion + ';' + EntrypointUtilsPatcher.FORMAT,
+                        bytes -> EntrypointUtilsPatcher.patch(bytes, RUNNING_ON_QUILT)
+                    );
+                } catch (Throwable t) {
+                    agent.completeExceptionally(t);
+                    return;
+                }
+                final long patchNanos = System.nanoTime() - start;
+                agent.complete(instrumentation);
+
+                try {
+                    screenStarted.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                final long probesStart = System.nanoTime();
+                try {
+                    startProbes(instrumentation, actualLoadingScreen, modVersion);
+                } catch (Throwable t) {
+                    System.out.println("[ModLoadingScreen] Failed to set up class loading and Mixin tracking");
+                    t.printStackTrace();
+                }
+                // Everything done on this thread would otherwise have been done by init, other than the time spent
+                // waiting for the loading screen
+                final long backgroundNanos = patchNanos + System.nanoTime() - probesStart;
+                System.out.println(
+                    "[ModLoadingScreen] Attached agent and set up tracking in the background in " +
+                        TimeUnit.NANOSECONDS.toMillis(backgroundNanos) + " ms, waited " +
+                        TimeUnit.NANOSECONDS.toMillis(waitNanos[0]) + " ms for it (saved " +
+                        TimeUnit.NANOSECONDS.toMillis(Math.max(0L, backgroundNanos - waitNanos[0])) + " ms)"
+                );
+            }, "LoadingScreenAgent");
+            agentThread.setDaemon(true);
+            agentThread.start();
+        }
+
+        Methods.invoke(null, Methods.getDeclaredMethod(actualLoadingScreen, "startLoadingScreen"));
+
+        Instrumentation instrumentation = null;
+        if (agent != null) {
+            final long waitStart = System.nanoTime();
+            try {
+                instrumentation = agent.get();
+            } catch (ExecutionException e) {
+                System.out.println("[ModLoadingScreen] Failed to attach agent");
+                e.getCause().printStackTrace();
+            }
+            waitNanos[0] = System.nanoTime() - waitStart;
+            screenStarted.countDown();
+        }
+        if (instrumentation == null) {
+            if (!Methods.<Boolean>invoke(null, Methods.getDeclaredMethod(actualLoadingScreen, "useEntrypointProxies"))) {
+                System.out.println(
+                    "[ModLoadingScreen] Entrypoints won't be tracked without an agent unless enableEntrypointProxies is set"
+                );
+            } else if (EntrypointProxies.install(actualLoadingScreen)) {
+                System.out.println(
+                    "[ModLoadingScreen] Tracking entrypoints without an agent. Class loading and Mixin times won't be tracked."
+                );
+            } else {
+                System.out.println("[ModLoadingScreen] Unsupported loader, entrypoints won't be tracked");
+            }
+        }
+    }
+
+    /**
+     * Starts the class loading and Mixin probes, and instruments the class loader to call them. Classes loaded before
+     * this finishes aren't counted.
+     */
+    private static void startProbes(
+        Instrumentation instrumentation, Class<?> actualLoadingScreen, String modVersion
+    ) throws Exception {
+        final boolean trackClassLoading = Methods.<Boolean>invoke(null, Methods.getDeclaredMethod(
+            actualLoadingScreen, "startClassLoadProbe", Instrumentation.class
+        ), instrumentation);
+        final boolean trackMixins = Methods.<Boolean>invoke(null, Methods.getDeclaredMethod(
+            actualLoadingScreen, "startMixinProbe"
         ));
+        if (trackClassLoading || trackMixins) {
+            retransform(
+                instrumentation, KNOT_CLASS_DELEGATE,
+                modVersion + ';' + CLASS_DELEGATE_FORMAT + ';' + trackClassLoading + ';' + trackMixins,
+                bytes -> instrumentClassDelegate(bytes, trackClassLoading, trackMixins)
+            );
+        }
+    }
 
-        Agents.getInstrumentation().addTransformer(
-            (loader, className, classBeingRedefined, protectionDomain, classfileBuffer) ->
-                className.equals(ENTRYPOINT_UTILS) ? instrumentClass(classfileBuffer) : null,
-            true
+    /**
+     * Patches an already loaded class, using the cached copy from an earlier launch if there is one. The transformer is
+     * only installed while the class is retransformed, so that it doesn't see every other class that gets loaded.
+     *
+     * @param variant Everything other than the original class that the patch depends on
+     */
+    private static void retransform(
+        Instrumentation instrumentation, String className, String variant, UnaryOperator<byte[]> patcher
+    ) throws Exception {
+        final String baseName = className.substring(className.lastIndexOf('/') + 1);
+        final Class<?> clazz = Class.forName(className.replace('/', '.'));
+        final long start = System.nanoTime();
+        final boolean[] cached = new boolean[1];
+        final boolean[] useCache = {true};
+        final ClassFileTransformer transformer = (loader, name, classBeingRedefined, protectionDomain, classfileBuffer) -> {
+            if (classBeingRedefined != clazz) {
+                return null;
+            }
+            final Path path = PatchedClassCache.path(CACHE_DIR, baseName, classfileBuffer, variant);
+            byte[] result = useCache[0] ? PatchedClassCache.read(path) : null;
+            cached[0] = result != null;
+            if (result == null) {
+                result = patcher.apply(classfileBuffer);
+                PatchedClassCache.write(path, baseName, result);
+            }
+            return result;
+        };
+        instrumentation.addTransformer(transformer, true);
+        try {
+            try {
+                instrumentation.retransformClasses(clazz);
+            } catch (LinkageError | UnsupportedOperationException e) {
+                if (!cached[0]) throw e;
+                // The cached copy is bad somehow, so patch it from scratch
+                System.out.println("[ModLoadingScreen] Cached " + baseName + " was rejected, patching it again");
+                PatchedClassCache.delete(CACHE_DIR, baseName, null);
+                useCache[0] = false;
+                instrumentation.retransformClasses(clazz);
+            }
+        } finally {
+            instrumentation.removeTransformer(transformer);
+        }
+        System.out.println(
+            "[ModLoadingScreen] Instrumented " + baseName + (cached[0] ? " from cache" : "") + " in " +
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) + " \u00b5s"
         );
-        Agents.getInstrumentation().retransformClasses(Class.forName(ENTRYPOINT_UTILS.replace('/', '.')));
     }
 
-    private static byte[] instrumentClass(byte[] bytes) {
+    private static byte[] instrumentClassDelegate(byte[] bytes, boolean trackClassLoading, boolean trackMixins) {
         final ClassNode clazz = new ClassNode();
         new ClassReader(bytes).accept(clazz, 0);
 
-        instrumentInvoke(clazz);
-        instrumentInvoke0(clazz);
+        if (trackClassLoading) {
+            instrumentTryLoadClass(clazz);
+        }
+        if (trackMixins) {
+            instrumentMixinTransform(clazz);
+        }
 
         final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
         clazz.accept(writer);
         return writer.toByteArray();
     }
 
-    private static void instrumentInvoke(ClassNode clazz) {
+    private static void instrumentTryLoadClass(ClassNode clazz) {
         final MethodNode method = clazz.methods.stream()
-            .filter(m -> m.name.equals(RUNNING_ON_QUILT ? "invokeContainer" : "invoke"))
+            .filter(m -> m.name.equals("tryLoadClass"))
             .findFirst()
-            .orElseThrow(AssertionError::new);
-        final ListIterator<AbstractInsnNode> it = method.instructions.iterator();
-
-        while (it.hasNext()) {
-            final AbstractInsnNode insn = it.next();
-            if (!(insn instanceof InsnNode)) continue;
-            if (insn.getOpcode() == Opcodes.RETURN) break;
+            .orElse(null);
+        if (method == null) {
+            System.out.println("[ModLoadingScreen] Unsupported class loader, class loading times won't be tracked");
+            return;
         }
-        it.previous();
-        it.add(new VarInsnNode(Opcodes.ALOAD, 0));
-        it.add(new MethodInsnNode(
-            Opcodes.INVOKESTATIC,
-            ACTUAL_LOADING_SCREEN, "maybeCloseAfter",
-            "(Ljava/lang/String;)V",
-            false
-        ));
-    }
 
-    private static void instrumentInvoke0(ClassNode clazz) {
-        final MethodNode method = clazz.methods.stream()
-            .filter(m -> m.name.equals("invoke0"))
-            .findFirst()
-            .orElseThrow(AssertionError::new);
-        final ListIterator<AbstractInsnNode> it = method.instructions.iterator();
+        for (final AbstractInsnNode insn : method.instructions.toArray()) {
+            if (insn.getOpcode() >= Opcodes.IRETURN && insn.getOpcode() <= Opcodes.RETURN) {
+                method.instructions.insertBefore(insn, new MethodInsnNode(
+                    Opcodes.INVOKESTATIC,
+                    ACTUAL_LOADING_SCREEN, "afterLoadClass",
+                    "()V"
+                ));
+            }
+        }
 
-        it.add(new VarInsnNode(Opcodes.ALOAD, 0));
-        it.add(new VarInsnNode(Opcodes.ALOAD, 1));
-        it.add(new MethodInsnNode(
+        // Exceptions are counted as the end of the load too
+        final LabelNode start = new LabelNode();
+        final LabelNode end = new LabelNode();
+        final LabelNode handler = new LabelNode();
+        final InsnList prologue = new InsnList();
+        prologue.add(new MethodInsnNode(
             Opcodes.INVOKESTATIC,
-            ACTUAL_LOADING_SCREEN, "beforeEntrypointType",
-            "(Ljava/lang/String;Ljava/lang/Class;)V"
-        ));
-
-        final int container = RUNNING_ON_QUILT ? 7 : 6;
-        while (it.hasNext()) {
-            final AbstractInsnNode insn = it.next();
-            if (!(insn instanceof VarInsnNode)) continue;
-            if (insn.getOpcode() == Opcodes.ASTORE && ((VarInsnNode)insn).var == container) break;
-        }
-        it.add(new VarInsnNode(Opcodes.ALOAD, 0));
-        it.add(new VarInsnNode(Opcodes.ALOAD, 1));
-        it.add(new MethodInsnNode(
-            Opcodes.INVOKEVIRTUAL,
-            "java/lang/Class", "getSimpleName",
-            "()Ljava/lang/String;"
-        ));
-        if (RUNNING_ON_QUILT) {
-            it.add(new TypeInsnNode(Opcodes.NEW, ENTRYPOINT_CONTAINER_IMPL));
-            it.add(new InsnNode(Opcodes.DUP));
-        }
-        it.add(new VarInsnNode(Opcodes.ALOAD, container));
-        if (RUNNING_ON_QUILT) {
-            it.add(new MethodInsnNode(
-                Opcodes.INVOKESPECIAL,
-                ENTRYPOINT_CONTAINER_IMPL, "<init>",
-                "(Lorg/quiltmc/loader/api/entrypoint/EntrypointContainer;)V"
-            ));
-        }
-        it.add(new MethodInsnNode(
-            Opcodes.INVOKEINTERFACE,
-            ENTRYPOINT_CONTAINER, "getProvider",
-            "()L" + MOD_CONTAINER + ";"
-        ));
-        it.add(new MethodInsnNode(
-            Opcodes.INVOKEINTERFACE,
-            MOD_CONTAINER, "getMetadata",
-            "()L" + MOD_METADATA + ";"
-        ));
-        it.add(new InsnNode(Opcodes.DUP));
-        it.add(new MethodInsnNode(
-            Opcodes.INVOKEINTERFACE,
-            MOD_METADATA, "getId",
-            "()Ljava/lang/String;"
+            ACTUAL_LOADING_SCREEN, "beforeLoadClass",
+            "()V"
         ));
-        it.add(new InsnNode(Opcodes.SWAP));
-        it.add(new MethodInsnNode(
-            Opcodes.INVOKEINTERFACE,
-            MOD_METADATA, "getName",
-            "()Ljava/lang/String;"
-        ));
-        it.add(new MethodInsnNode(
+        prologue.add(start);
+        method.instructions.insert(prologue);
+        method.instructions.add(end);
+        method.instructions.add(handler);
+        method.instructions.add(new MethodInsnNode(
             Opcodes.INVOKESTATIC,
-            ACTUAL_LOADING_SCREEN, "beforeSingleEntrypoint",
-            "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)V",
-            false
+            ACTUAL_LOADING_SCREEN, "afterLoadClass",
+            "()V"
         ));
+        method.instructions.add(new InsnNode(Opcodes.ATHROW));
+        method.tryCatchBlocks.add(new TryCatchBlockNode(start, end, handler, null));
+    }
 
-        while (it.hasNext()) {
-            final AbstractInsnNode insn = it.next();
-            if (!(insn instanceof InsnNode)) continue;
-            if (insn.getOpcode() == Opcodes.IFNULL) break;
+    private static void instrumentMixinTransform(ClassNode clazz) {
+        boolean found = false;
+        for (final MethodNode method : clazz.methods) {
+            // The class name is taken from the method's first parameter, as the transformer's arguments are already
+            // on the stack by the time it's called
+            final boolean hasName = (method.access & Opcodes.ACC_STATIC) == 0 && method.desc.startsWith("(Ljava/lang/String;");
+            for (final AbstractInsnNode insn : method.instructions.toArray()) {
+                if (insn.getOpcode() != Opcodes.INVOKEINTERFACE) continue;
+                final MethodInsnNode call = (MethodInsnNode)insn;
+                if (!call.owner.equals(MIXIN_TRANSFORMER) || !call.name.equals("transformClassBytes")) continue;
+                found = true;
+
+                final LabelNode start = new LabelNode();
+                final LabelNode end = new LabelNode();
+                final LabelNode handler = new LabelNode();
+                final InsnList before = new InsnList();
+                before.add(hasName ? new VarInsnNode(Opcodes.ALOAD, 1) : new InsnNode(Opcodes.ACONST_NULL));
+                before.add(new MethodInsnNode(
+                    Opcodes.INVOKESTATIC,
+                    ACTUAL_LOADING_SCREEN, "beforeMixinTransform",
+                    "(Ljava/lang/String;)V"
+                ));
+                before.add(start);
+                method.instructions.insertBefore(call, before);
+                // Exceptions from Mixin end the transform too. The handler is placed right after the call, so that the
+                // method's own handlers still see the exception it rethrows, and comes before them in the table.
+                final LabelNode done = new LabelNode();
+                final InsnList after = new InsnList();
+                after.add(end);
+                after.add(new MethodInsnNode(
+                    Opcodes.INVOKESTATIC,
+                    ACTUAL_LOADING_SCREEN, "afterMixinTransform",
+                    "()V"
+                ));
+                after.add(new JumpInsnNode(Opcodes.GOTO, done));
+                after.add(handler);
+                after.add(new MethodInsnNode(
+                    Opcodes.INVOKESTATIC,
+                    ACTUAL_LOADING_SCREEN, "afterMixinTransform",
+                    "()V"
+                ));
+                after.add(new InsnNode(Opcodes.ATHROW));
+                after.add(done);
+                method.instructions.insert(call, after);
+                method.tryCatchBlocks.add(0, new TryCatchBlockNode(start, end, handler, null));
+            }
+        }
+        if (!found) {
+            System.out.println("[ModLoadingScreen] Unsupported class loader, Mixin times won't be tracked");
         }
-        it.previous();
-        it.previous();
-        it.add(new VarInsnNode(Opcodes.ALOAD, 0));
-        it.add(new MethodInsnNode(
-            Opcodes.INVOKESTATIC,
-            ACTUAL_LOADING_SCREEN, "afterEntrypointType",
-            "(Ljava/lang/String;)V"
-        ));
     }
 
     static {
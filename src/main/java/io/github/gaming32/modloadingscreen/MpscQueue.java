@@ -0,0 +1,100 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, lock-free, multi-producer single-consumer queue. Each slot carries a sequence number that tells producers
+ * whether it is free and the consumer whether it has been published, so neither side ever takes a lock.
+ *
+ * <p>The elements are mutable records that are allocated up front and reused. A producer {@linkplain #claim claims} a
+ * slot, fills in its element and {@linkplain #publish publishes} it, so nothing is allocated per message.
+ */
+final class MpscQueue<E> {
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only written by the consumer, but volatile so that size() can be read from any thread
+    private volatile long head;
+
+    MpscQueue(int capacity, Supplier<E> factory) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        elements = new Object[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            elements[i] = factory.get();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claims the next slot. Its element may then be filled in by the calling thread, which must
+     * {@linkplain #publish publish} it afterwards.
+     *
+     * @return The position of the slot, or {@code -1} if the queue is full
+     */
+    long claim() {
+        long pos = tail.get();
+        while (true) {
+            final int index = (int)(pos & mask);
+            final long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    return pos;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return -1L;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Returns the element of a slot. Only the thread that claimed it, or the consumer once it's published, may use it.
+     */
+    @SuppressWarnings("unchecked")
+    E get(long position) {
+        return (E)elements[(int)(position & mask)];
+    }
+
+    /**
+     * Makes a claimed slot visible to the consumer, along with everything written to its element.
+     */
+    void publish(long position) {
+        sequences.lazySet((int)(position & mask), position + 1);
+    }
+
+    /**
+     * May only be called from the consumer thread.
+     *
+     * @return The position of the next published slot, or {@code -1} if the queue is empty
+     */
+    long peek() {
+        final long pos = head;
+        return sequences.get((int)(pos & mask)) == pos + 1 ? pos : -1L;
+    }
+
+    /**
+     * Hands a slot returned by {@link #peek} back to the producers. May only be called from the consumer thread.
+     */
+    void release(long position) {
+        sequences.lazySet((int)(position & mask), position + mask + 1);
+        head = position + 1;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    int size() {
+        final long size = tail.get() - head;
+        return size < 0 ? 0 : (int)Math.min(size, mask + 1);
+    }
+}
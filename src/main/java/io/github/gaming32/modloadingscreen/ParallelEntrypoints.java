@@ -0,0 +1,75 @@
+package io.github.gaming32.modloadingscreen;
+
+import net.fabricmc.loader.api.metadata.CustomValue;
+import net.fabricmc.loader.api.metadata.ModMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the entrypoints of parallel-safe mods concurrently. A mod is parallel-safe if it sets the
+ * {@value #PARALLEL_SAFE_KEY} custom value to {@code true} in its fabric.mod.json, or if the user added it to the
+ * allowlist in the config.
+ */
+final class ParallelEntrypoints {
+    static final String PARALLEL_SAFE_KEY = "mod-loading-screen:parallelSafe";
+
+    private static ForkJoinPool pool;
+
+    static boolean isParallelSafe(ModMetadata metadata, Set<String> allowlist) {
+        if (allowlist.contains(metadata.getId())) {
+            return true;
+        }
+        if (!metadata.containsCustomValue(PARALLEL_SAFE_KEY)) {
+            return false;
+        }
+        final CustomValue value = metadata.getCustomValue(PARALLEL_SAFE_KEY);
+        return value.getType() == CustomValue.CvType.BOOLEAN && value.getAsBoolean();
+    }
+
+    /**
+     * Runs every task, and returns once all of them have finished. Tasks marked as parallel are run on a shared
+     * {@link ForkJoinPool}, while the others are run in order on the calling thread at the same time. Tasks must
+     * handle their own exceptions.
+     */
+    static void runAll(Runnable[] tasks, boolean[] parallel) {
+        final List<ForkJoinTask<?>> forked = new ArrayList<>();
+        for (int i = 0; i < tasks.length; i++) {
+            if (parallel[i]) {
+                forked.add(getPool().submit(tasks[i]));
+            }
+        }
+        for (int i = 0; i < tasks.length; i++) {
+            if (!parallel[i]) {
+                tasks[i].run();
+            }
+        }
+        for (final ForkJoinTask<?> task : forked) {
+            task.quietlyJoin();
+        }
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            // Mods expect to be initialized with the game's class loader as the context class loader
+            final ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+            final AtomicInteger threadCount = new AtomicInteger();
+            pool = new ForkJoinPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                p -> {
+                    final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    thread.setName("EntrypointWorker-" + threadCount.incrementAndGet());
+                    thread.setContextClassLoader(contextLoader);
+                    return thread;
+                },
+                null, false
+            );
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A cache of classes patched with ASM, so that later launches can skip reading and rewriting them. Each cached class
+ * is named after a SHA-256 of the original class and a variant, which must identify everything else that the patched
+ * class depends on, such as the mod version and config options.
+ */
+final class PatchedClassCache {
+    private static final int MAGIC = 0xcafebabe;
+
+    private PatchedClassCache() {
+    }
+
+    /**
+     * Returns the path that the patched copy of {@code original} is stored at, which is
+     * {@code <baseName>-<key>.class}.
+     */
+    static Path path(Path cacheDir, String baseName, byte[] original, String variant) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+        digest.update(original);
+        digest.update(variant.getBytes(StandardCharsets.UTF_8));
+        final StringBuilder key = new StringBuilder(baseName).append('-');
+        final byte[] hash = digest.digest();
+        // Half of the hash is plenty to tell versions apart
+        for (int i = 0; i < hash.length / 2; i++) {
+            key.append(Character.forDigit((hash[i] >> 4) & 0xf, 16)).append(Character.forDigit(hash[i] & 0xf, 16));
+        }
+        return cacheDir.resolve(key.append(".class").toString());
+    }
+
+    /**
+     * Reads a patched class stored by {@link #write}.
+     *
+     * @return The patched class, or {@code null} if it isn't cached
+     */
+    @Nullable
+    static byte[] read(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            final byte[] bytes = Files.readAllBytes(path);
+            if (bytes.length < 4 || (bytes[0] << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | bytes[3] & 0xff) != MAGIC) {
+                System.out.println("[ModLoadingScreen] Ignoring invalid cached class " + path.getFileName());
+                return null;
+            }
+            return bytes;
+        } catch (IOException e) {
+            System.out.println("[ModLoadingScreen] Failed to read cached class " + path.getFileName());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a patched class at {@code path}, as returned by {@link #path}. Any other cached versions of the same class
+     * are deleted. Failures are logged, as the class can always be patched again.
+     */
+    static void write(Path path, String baseName, byte[] patched) {
+        final Path cacheDir = path.getParent();
+        try {
+            Files.createDirectories(cacheDir);
+            final Path temp = Files.createTempFile(cacheDir, baseName, ".tmp");
+            try {
+                Files.write(temp, patched);
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            delete(cacheDir, baseName, path.getFileName().toString());
+        } catch (IOException e) {
+            System.out.println("[ModLoadingScreen] Failed to cache patched class " + path.getFileName());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Deletes the cached versions of a class, except for {@code keep}, which may be {@code null}.
+     */
+    static void delete(Path cacheDir, String baseName, @Nullable String keep) throws IOException {
+        if (!Files.isDirectory(cacheDir)) return;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, baseName + "-*.class")) {
+            for (final Path path : stream) {
+                if (!path.getFileName().toString().equals(keep)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+}
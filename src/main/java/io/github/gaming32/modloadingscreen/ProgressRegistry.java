@@ -0,0 +1,304 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress bars that are currently open, in the order they were opened. Progress is counted with primitive
+ * atomic counters, so it can be advanced from any thread without locking or boxing. Opening and closing bars is rare,
+ * so the ordered list of bars is copy-on-write, letting readers take a consistent snapshot of it with a single read.
+ */
+final class ProgressRegistry {
+    private static final Bar[] NO_BARS = new Bar[0];
+
+    private final ConcurrentHashMap<String, Bar> bars = new ConcurrentHashMap<>();
+    private volatile Bar[] ordered = NO_BARS;
+    // Set whenever a bar is opened, advanced, or closed, and cleared by the UI. Only written when it isn't already set,
+    // so that threads advancing bars between frames only read it, rather than all contending to update one counter.
+    private volatile boolean changed = true;
+    private final Map<String, Integer> mapView = new MapView();
+    @Nullable
+    private volatile Listener listener;
+
+    /**
+     * Sets the listener that's told when bars are opened and closed, and returns the bars that are open at that point.
+     */
+    synchronized Bar[] setListener(@Nullable Listener listener) {
+        this.listener = listener;
+        return ordered;
+    }
+
+    /**
+     * Opens a new bar, replacing any open bar with the same name.
+     *
+     * @param typeType The simple name of the entrypoint type, or {@code null} for custom bars from the API.
+     */
+    Bar open(String name, @Nullable String typeType, long max) {
+        final Bar bar = new Bar(name, typeType, max);
+        synchronized (this) {
+            final Bar old = bars.put(name, bar);
+            final List<Bar> newOrdered = new ArrayList<>(Arrays.asList(ordered));
+            if (old != null) {
+                newOrdered.remove(old);
+            }
+            newOrdered.add(bar);
+            ordered = newOrdered.toArray(NO_BARS);
+            // Told while locked, so that it sees the same order as the registry
+            final Listener listener = this.listener;
+            if (listener != null) {
+                if (old != null) {
+                    listener.closed(old);
+                }
+                listener.opened(bar);
+            }
+        }
+        markChanged();
+        return bar;
+    }
+
+    @Nullable
+    Bar get(String name) {
+        return bars.get(name);
+    }
+
+    @Nullable
+    Bar close(String name) {
+        final Bar bar;
+        synchronized (this) {
+            bar = bars.remove(name);
+            if (bar == null) {
+                return null;
+            }
+            removeOrdered(bar);
+        }
+        markChanged();
+        return bar;
+    }
+
+    /**
+     * Closes the given bar, unless it has already been closed or replaced by a bar with the same name.
+     */
+    void close(Bar bar) {
+        synchronized (this) {
+            if (!bars.remove(bar.name, bar)) return;
+            removeOrdered(bar);
+        }
+        markChanged();
+    }
+
+    private void removeOrdered(Bar bar) {
+        final Bar[] oldOrdered = ordered;
+        int index = 0;
+        while (oldOrdered[index] != bar) {
+            index++;
+        }
+        // Copied straight into the new array, so closing the last bar doesn't allocate
+        final Bar[] newOrdered = oldOrdered.length == 1 ? NO_BARS : new Bar[oldOrdered.length - 1];
+        System.arraycopy(oldOrdered, 0, newOrdered, 0, index);
+        System.arraycopy(oldOrdered, index + 1, newOrdered, index, newOrdered.length - index);
+        ordered = newOrdered;
+        final Listener listener = this.listener;
+        if (listener != null) {
+            listener.closed(bar);
+        }
+    }
+
+    synchronized void clear() {
+        final Listener listener = this.listener;
+        if (listener != null) {
+            for (final Bar bar : ordered) {
+                listener.closed(bar);
+            }
+        }
+        bars.clear();
+        ordered = NO_BARS;
+        markChanged();
+    }
+
+    /**
+     * Returns the open bars in the order they were opened. The returned array must not be modified.
+     */
+    Bar[] snapshot() {
+        return ordered;
+    }
+
+    private void markChanged() {
+        if (!changed) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Returns whether a bar has been opened, advanced, or closed since the last call. The bars must be read after
+     * this, so that changes made while they're read are reported by the next call.
+     */
+    boolean takeChanged() {
+        if (!changed) {
+            return false;
+        }
+        changed = false;
+        return true;
+    }
+
+    /**
+     * Returns a read-only {@link Map} view of the progress of each open bar, in the order they were opened.
+     */
+    Map<String, Integer> asMap() {
+        return mapView;
+    }
+
+    /**
+     * Told about bars being opened and closed. Called while the registry is locked, so it must return quickly.
+     */
+    interface Listener {
+        void opened(Bar bar);
+
+        void closed(Bar bar);
+    }
+
+    final class Bar {
+        final String name;
+        @Nullable
+        final String typeType;
+        final long max;
+        private final AtomicLong value = new AtomicLong();
+        @Nullable
+        private volatile String detail;
+        // Expected durations from LaunchHistory, in nanoseconds. Only approximately consistent with each other, which
+        // is fine for display.
+        private volatile long expectedTotal;
+        private final AtomicLong startedExpected = new AtomicLong();
+        private volatile long lastExpected;
+        private volatile long lastStart;
+
+        private Bar(String name, @Nullable String typeType, long max) {
+            this.name = name;
+            this.typeType = typeType;
+            this.max = max;
+        }
+
+        long get() {
+            return value.get();
+        }
+
+        long increment() {
+            final long result = value.incrementAndGet();
+            markChanged();
+            return result;
+        }
+
+        void set(long newValue) {
+            value.set(newValue);
+            markChanged();
+        }
+
+        /**
+         * Returns the text shown after the progress, such as the name of the mod currently being loaded.
+         */
+        @Nullable
+        String getDetail() {
+            return detail;
+        }
+
+        void setDetail(@Nullable String detail) {
+            this.detail = detail;
+        }
+
+        /**
+         * Returns how long all the entrypoints of this bar are expected to take in nanoseconds, or {@code 0} if that
+         * isn't known, in which case progress should be shown by count.
+         */
+        long getExpectedTotal() {
+            return expectedTotal;
+        }
+
+        void setExpectedTotal(long nanos) {
+            expectedTotal = nanos;
+            markChanged();
+        }
+
+        /**
+         * Records that an entrypoint expected to take the given number of nanoseconds has started.
+         */
+        void beginEntrypoint(long expectedNanos) {
+            startedExpected.addAndGet(expectedNanos);
+            lastExpected = expectedNanos;
+            lastStart = System.nanoTime();
+            markChanged();
+        }
+
+        /**
+         * Returns how many of the expected nanoseconds are done, counting the latest entrypoint as done for as long as
+         * it has been running, up to how long it was expected to take.
+         */
+        long getExpectedDone(long now) {
+            final long latest = lastExpected;
+            final long done = startedExpected.get() - latest + Math.min(Math.max(0, now - lastStart), latest);
+            return Math.max(0, Math.min(done, expectedTotal));
+        }
+
+        /**
+         * Returns how far along this bar is, from 0 to 1, by expected time if that's known and by count otherwise.
+         */
+        double getFraction(long now) {
+            final long total = expectedTotal;
+            if (total > 0) {
+                return (double)getExpectedDone(now) / total;
+            }
+            return max > 0 ? Math.min(1.0, (double)get() / max) : 0.0;
+        }
+    }
+
+    private final class MapView extends AbstractMap<String, Integer> {
+        @Override
+        public Integer get(Object key) {
+            final Bar bar = bars.get(key);
+            return bar != null ? (int)Math.min(bar.get(), Integer.MAX_VALUE) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return bars.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return ordered.length;
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Entry<String, Integer>>() {
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    final Bar[] snapshot = ordered;
+                    return new Iterator<Entry<String, Integer>>() {
+                        int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < snapshot.length;
+                        }
+
+                        @Override
+                        public Entry<String, Integer> next() {
+                            if (index >= snapshot.length) {
+                                throw new NoSuchElementException();
+                            }
+                            final Bar bar = snapshot[index++];
+                            return new SimpleImmutableEntry<>(bar.name, (int)Math.min(bar.get(), Integer.MAX_VALUE));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ordered.length;
+                }
+            };
+        }
+    }
+}
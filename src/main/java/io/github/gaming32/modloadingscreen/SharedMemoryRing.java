@@ -0,0 +1,315 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A single-producer, single-consumer byte ring in a memory-mapped file, used as an alternative to the pipe for sending
+ * IPC messages. Writing to it is a memory copy, not a system call, and the IPC client polls it instead of blocking on
+ * a read. The bytes are the same {@link IpcWriter} stream that would go through the pipe.
+ *
+ * <p>The file starts with a header, followed by the data. The producer's and consumer's positions are the total number
+ * of bytes written and read, each on its own cache line, and are published with ordered stores through
+ * {@code sun.misc.Unsafe}, so that the other process sees the data before the position that covers it. The producer
+ * only publishes when the {@link IpcWriter} flushes, so the consumer never sees part of a frame.
+ *
+ * <p>The address of the mapping comes from {@code sun.nio.ch.DirectBuffer}, which is only accessible on Java 8, or with
+ * {@code --add-exports java.base/sun.nio.ch=ALL-UNNAMED}. Without it, {@link #getUnavailableReason} says why, and the
+ * pipe is used instead.
+ */
+final class SharedMemoryRing {
+    static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private static final int MAGIC = 0x4d4c5352;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int WRITE_POSITION_OFFSET = 64;
+    private static final int READ_POSITION_OFFSET = 128;
+    private static final int HEADER_SIZE = 192;
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+
+    // Looked up reflectively, so that this still loads if they're inaccessible, in which case the pipe is used
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle PUT_ORDERED_LONG;
+    private static final MethodHandle ADDRESS;
+    @Nullable
+    private static final String UNAVAILABLE_REASON;
+
+    static {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle getLongVolatile = null;
+        MethodHandle putOrderedLong = null;
+        MethodHandle address = null;
+        String unavailableReason = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Object instance = theUnsafe.get(null);
+            getLongVolatile = lookup.findVirtual(
+                unsafeClass, "getLongVolatile", MethodType.methodType(long.class, Object.class, long.class)
+            ).bindTo(instance);
+            putOrderedLong = lookup.findVirtual(
+                unsafeClass, "putOrderedLong", MethodType.methodType(void.class, Object.class, long.class, long.class)
+            ).bindTo(instance);
+        } catch (Throwable t) {
+            unavailableReason = "sun.misc.Unsafe isn't available (" + t + ')';
+        }
+        if (unavailableReason == null) {
+            try {
+                address = lookup.findVirtual(
+                    Class.forName("sun.nio.ch.DirectBuffer"), "address", MethodType.methodType(long.class)
+                ).asType(MethodType.methodType(long.class, ByteBuffer.class));
+            } catch (Throwable t) {
+                unavailableReason = "sun.nio.ch.DirectBuffer isn't accessible (" + t + ')';
+            }
+        }
+        GET_LONG_VOLATILE = getLongVolatile;
+        PUT_ORDERED_LONG = putOrderedLong;
+        ADDRESS = address;
+        UNAVAILABLE_REASON = unavailableReason;
+    }
+
+    final Path path;
+    private final MappedByteBuffer buffer;
+    private final long address;
+    private final int capacity;
+    private final int mask;
+
+    private SharedMemoryRing(Path path, MappedByteBuffer buffer, int capacity) throws IOException {
+        if (UNAVAILABLE_REASON != null) {
+            throw new IOException(UNAVAILABLE_REASON);
+        }
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        mask = capacity - 1;
+        try {
+            address = (long)ADDRESS.invokeExact((ByteBuffer)buffer);
+        } catch (Throwable t) {
+            throw new IOException("Failed to find the address of the shared memory", t);
+        }
+    }
+
+    /**
+     * Returns why rings can't be used in this JVM, or {@code null} if they can.
+     */
+    @Nullable
+    static String getUnavailableReason() {
+        return UNAVAILABLE_REASON;
+    }
+
+    /**
+     * Creates a new ring in the given file. Called by the producer.
+     *
+     * @param capacity The number of bytes of data, which must be a power of two.
+     */
+    static SharedMemoryRing create(Path path, int capacity) throws IOException {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE
+        )) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+        }
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        return new SharedMemoryRing(path, buffer, capacity);
+    }
+
+    /**
+     * Opens a ring created by {@link #create}. Called by the consumer.
+     */
+    static SharedMemoryRing open(Path path) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Invalid shared memory ring header");
+        }
+        final int capacity = buffer.getInt(CAPACITY_OFFSET);
+        if (Integer.bitCount(capacity) != 1 || HEADER_SIZE + capacity > buffer.capacity()) {
+            throw new IOException("Invalid shared memory ring capacity " + capacity);
+        }
+        return new SharedMemoryRing(path, buffer, capacity);
+    }
+
+    private long getPosition(int offset) {
+        try {
+            return (long)GET_LONG_VOLATILE.invokeExact((Object)null, address + offset);
+        } catch (Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+
+    private void putPosition(int offset, long position) {
+        try {
+            PUT_ORDERED_LONG.invokeExact((Object)null, address + offset, position);
+        } catch (Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+
+    /**
+     * Returns the stream the producer writes to. Bytes are only made visible to the consumer when it's flushed.
+     *
+     * @param consumerAlive Checked while waiting for the consumer to make room, so that a dead consumer doesn't hang
+     * the producer.
+     * @param onClose Closed after the stream, which is how the consumer is told that the producer is done.
+     */
+    OutputStream output(BooleanSupplier consumerAlive, Closeable onClose) {
+        return new RingOutputStream(consumerAlive, onClose);
+    }
+
+    /**
+     * Returns the stream the consumer reads from.
+     *
+     * @param pollIntervalNanos How long to wait before checking for more bytes when the ring is empty.
+     */
+    RingInputStream input(long pollIntervalNanos) {
+        return new RingInputStream(pollIntervalNanos);
+    }
+
+    private final class RingOutputStream extends OutputStream {
+        private final BooleanSupplier consumerAlive;
+        private final Closeable onClose;
+        private final ByteBuffer data = buffer.duplicate();
+        private final byte[] singleByte = new byte[1];
+        private long position;
+        private long published;
+
+        RingOutputStream(BooleanSupplier consumerAlive, Closeable onClose) {
+            this.consumerAlive = consumerAlive;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            singleByte[0] = (byte)b;
+            write(singleByte, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                final long free = capacity - (position - getPosition(READ_POSITION_OFFSET));
+                if (free == 0) {
+                    waitForSpace();
+                    continue;
+                }
+                final int index = (int)(position & mask);
+                final int count = (int)Math.min(Math.min(len, free), capacity - index);
+                data.position(HEADER_SIZE + index);
+                data.put(b, off, count);
+                position += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        // The consumer can only make room once it can see what's been written so far
+        private void waitForSpace() throws IOException {
+            flush();
+            if (!consumerAlive.getAsBoolean()) {
+                throw new IOException("The IPC client exited");
+            }
+            LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+        }
+
+        @Override
+        public void flush() {
+            if (position != published) {
+                putPosition(WRITE_POSITION_OFFSET, position);
+                published = position;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            onClose.close();
+        }
+    }
+
+    final class RingInputStream extends InputStream {
+        private final long pollIntervalNanos;
+        private final ByteBuffer data = buffer.duplicate();
+        private final byte[] singleByte = new byte[1];
+        private long position;
+        private volatile boolean endOfInput;
+        @Nullable
+        private volatile Thread reader;
+
+        RingInputStream(long pollIntervalNanos) {
+            this.pollIntervalNanos = pollIntervalNanos;
+        }
+
+        /**
+         * Called when the producer is known to be done. Bytes that were already published can still be read.
+         */
+        void endOfInput() {
+            endOfInput = true;
+            final Thread waiting = reader;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                // Read before checking the ring, so that nothing published before the end is missed
+                final boolean ended = endOfInput;
+                final long available = getPosition(WRITE_POSITION_OFFSET) - position;
+                if (available > 0) {
+                    final int index = (int)(position & mask);
+                    final int count = (int)Math.min(Math.min(len, available), capacity - index);
+                    data.position(HEADER_SIZE + index);
+                    data.get(b, off, count);
+                    position += count;
+                    putPosition(READ_POSITION_OFFSET, position);
+                    return count;
+                }
+                if (ended) {
+                    return -1;
+                }
+                reader = Thread.currentThread();
+                LockSupport.parkNanos(this, pollIntervalNanos);
+                reader = null;
+            }
+        }
+
+        @Override
+        public int available() {
+            return (int)Math.min(getPosition(WRITE_POSITION_OFFSET) - position, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+
+/**
+ * Records how long each phase of starting the loading screen takes, which is the loading screen's own overhead on
+ * startup. Phases may run on different threads at the same time, so their durations can add up to more than the total.
+ */
+final class StartupPhases {
+    private final long start = System.nanoTime();
+    private final StringJoiner phases = new StringJoiner(", ");
+
+    long elapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    void run(String name, Runnable phase) {
+        final long phaseStart = System.nanoTime();
+        try {
+            phase.run();
+        } finally {
+            record(name, phaseStart);
+        }
+    }
+
+    <T> T call(String name, Callable<T> phase) throws Exception {
+        final long phaseStart = System.nanoTime();
+        try {
+            return phase.call();
+        } finally {
+            record(name, phaseStart);
+        }
+    }
+
+    synchronized void record(String name, long phaseStart) {
+        phases.add(name + ' ' + (System.nanoTime() - phaseStart) / 1000L + " \u00b5s");
+    }
+
+    @Override
+    public synchronized String toString() {
+        return phases.toString();
+    }
+}
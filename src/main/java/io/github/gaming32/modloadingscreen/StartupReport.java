@@ -0,0 +1,136 @@
+package io.github.gaming32.modloadingscreen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A plain text report on the launch, written to the config dir. It starts with how the launch compares to previous
+ * ones, followed by any other sections, such as class loading totals. The baseline is the median of the last
+ * {@link #BASELINE_LAUNCHES} launches, so that a single unusually slow or fast launch doesn't skew it. When the launch
+ * is slower than the baseline by more than the threshold, the report lists what changed in the mod set since the
+ * previous launch, and which mods' entrypoints got slower.
+ */
+final class StartupReport {
+    static final int BASELINE_LAUNCHES = 5;
+    private static final int MIN_BASELINE_LAUNCHES = 3;
+    private static final int MAX_SLOWER_MODS = 20;
+    // Smaller differences than this are just noise
+    private static final long MIN_SLOWDOWN_MICROS = 20_000L;
+
+    private final List<String> lines = new ArrayList<>();
+    private boolean regression;
+
+    void compare(LaunchLog.Launch launch, List<LaunchLog.Launch> previous, int thresholdPercent) {
+        final List<LaunchLog.Launch> baseline = previous.subList(
+            Math.max(0, previous.size() - BASELINE_LAUNCHES), previous.size()
+        );
+        lines.add("Mods took " + launch.startupMillis + " ms to load (" + launch.versions.size() + " mods)");
+        if (baseline.size() < MIN_BASELINE_LAUNCHES) {
+            lines.add("Not enough previous launches for a baseline yet (" + baseline.size() + '/' + MIN_BASELINE_LAUNCHES + ')');
+            return;
+        }
+
+        final long[] baselineTimes = new long[baseline.size()];
+        for (int i = 0; i < baselineTimes.length; i++) {
+            baselineTimes[i] = baseline.get(i).startupMillis;
+        }
+        final long baselineMillis = median(baselineTimes);
+        final long changePercent = baselineMillis > 0 ? (launch.startupMillis - baselineMillis) * 100 / baselineMillis : 0;
+        lines.add(
+            "Baseline is " + baselineMillis + " ms (median of the last " + baseline.size() + " launches), " +
+                (changePercent >= 0 ? "+" : "") + changePercent + '%'
+        );
+        regression = changePercent > thresholdPercent;
+        if (!regression) return;
+
+        lines.add("");
+        lines.add("This launch was more than " + thresholdPercent + "% slower than the baseline.");
+        addModChanges(launch, previous.get(previous.size() - 1));
+        addSlowerMods(launch, baseline);
+    }
+
+    private void addModChanges(LaunchLog.Launch launch, LaunchLog.Launch last) {
+        final List<String> changes = new ArrayList<>();
+        for (final Map.Entry<String, String> mod : launch.versions.entrySet()) {
+            final String oldVersion = last.versions.get(mod.getKey());
+            if (oldVersion == null) {
+                changes.add("  + " + mod.getKey() + ' ' + mod.getValue());
+            } else if (!oldVersion.equals(mod.getValue())) {
+                changes.add("  * " + mod.getKey() + ' ' + oldVersion + " -> " + mod.getValue());
+            }
+        }
+        for (final Map.Entry<String, String> mod : last.versions.entrySet()) {
+            if (!launch.versions.containsKey(mod.getKey())) {
+                changes.add("  - " + mod.getKey() + ' ' + mod.getValue());
+            }
+        }
+        lines.add("");
+        lines.add("Mod changes since the previous launch:");
+        if (changes.isEmpty()) {
+            lines.add("  (none)");
+        } else {
+            Collections.sort(changes, Comparator.comparing(change -> change.substring(4)));
+            lines.addAll(changes);
+        }
+    }
+
+    private void addSlowerMods(LaunchLog.Launch launch, List<LaunchLog.Launch> baseline) {
+        final List<Map.Entry<String, Long>> slower = new ArrayList<>();
+        final Map<String, Long> baselineMicros = new HashMap<>();
+        for (final Map.Entry<String, Long> mod : launch.entrypointMicros.entrySet()) {
+            final long[] times = baseline.stream()
+                .filter(l -> l.entrypointMicros.containsKey(mod.getKey()))
+                .mapToLong(l -> l.entrypointMicros.get(mod.getKey()))
+                .toArray();
+            final long modBaseline = times.length > 0 ? median(times) : 0L;
+            final long growth = mod.getValue() - modBaseline;
+            if (growth >= MIN_SLOWDOWN_MICROS) {
+                slower.add(new AbstractMap.SimpleImmutableEntry<>(mod.getKey(), growth));
+                baselineMicros.put(mod.getKey(), modBaseline);
+            }
+        }
+        slower.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        lines.add("");
+        lines.add("Mods whose entrypoints got slower:");
+        if (slower.isEmpty()) {
+            lines.add("  (none)");
+        }
+        for (final Map.Entry<String, Long> mod : slower.subList(0, Math.min(slower.size(), MAX_SLOWER_MODS))) {
+            lines.add(
+                "  " + mod.getKey() + ": " + baselineMicros.get(mod.getKey()) / 1000L + " ms -> " +
+                    launch.entrypointMicros.get(mod.getKey()) / 1000L + " ms (+" + mod.getValue() / 1000L + " ms)"
+            );
+        }
+    }
+
+    void addSection(String title, List<String> sectionLines) {
+        if (!lines.isEmpty()) {
+            lines.add("");
+        }
+        lines.add(title + ':');
+        lines.addAll(sectionLines);
+    }
+
+    static long median(long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    boolean isRegression() {
+        return regression;
+    }
+
+    List<String> getLines() {
+        return lines;
+    }
+
+    void write(Path path) throws IOException {
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,172 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Records wall-clock timings of entrypoint invocations and writes them in the Chrome Trace Event format, so that they
+ * can be opened in {@code chrome://tracing}, Perfetto, or any other compatible trace viewer.
+ *
+ * <p>The spans are stored in columns, so that {@link #beginMod}, which is called for every entrypoint, doesn't allocate
+ * anything once there's room for the launch's entrypoints, which {@link #reserve} makes ahead of time.
+ */
+final class StartupTrace {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final long origin = System.nanoTime();
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] categories = new String[INITIAL_CAPACITY];
+    private String[] typeNames = new String[INITIAL_CAPACITY];
+    private String[] typeTypes = new String[INITIAL_CAPACITY];
+    // null for entrypoint type spans
+    private String[] modNames = new String[INITIAL_CAPACITY];
+    private long[] threadIds = new long[INITIAL_CAPACITY];
+    private long[] starts = new long[INITIAL_CAPACITY];
+    // 0 for spans that haven't ended
+    private long[] ends = new long[INITIAL_CAPACITY];
+    private int size;
+    private final Map<String, Integer> openTypes = new HashMap<>();
+    // The index of the span of the mod each thread is running, or -1. Kept per thread, as a mod's span is only closed
+    // by the next mod on the same thread.
+    private final ThreadLocal<int[]> openMod = ThreadLocal.withInitial(() -> new int[] {-1});
+
+    /**
+     * Makes room for the given number of spans to begin without allocating.
+     */
+    synchronized void reserve(int spans) {
+        final int capacity = size + spans;
+        if (capacity <= starts.length) return;
+        final int newCapacity = Math.max(capacity, starts.length * 2);
+        names = Arrays.copyOf(names, newCapacity);
+        categories = Arrays.copyOf(categories, newCapacity);
+        typeNames = Arrays.copyOf(typeNames, newCapacity);
+        typeTypes = Arrays.copyOf(typeTypes, newCapacity);
+        modNames = Arrays.copyOf(modNames, newCapacity);
+        threadIds = Arrays.copyOf(threadIds, newCapacity);
+        starts = Arrays.copyOf(starts, newCapacity);
+        ends = Arrays.copyOf(ends, newCapacity);
+    }
+
+    private int add(
+        String name, String category, String typeName, String typeType, @Nullable String modName, long start
+    ) {
+        reserve(1);
+        names[size] = name;
+        categories[size] = category;
+        typeNames[size] = typeName;
+        typeTypes[size] = typeType;
+        modNames[size] = modName;
+        threadIds[size] = Thread.currentThread().getId();
+        starts[size] = start;
+        return size++;
+    }
+
+    synchronized void beginType(String typeName, String typeType) {
+        openTypes.put(typeName, add(typeName, "entrypoint", typeName, typeType, null, System.nanoTime()));
+    }
+
+    synchronized void beginMod(String typeName, String typeType, String modId, String modName) {
+        final long now = System.nanoTime();
+        final int[] mod = openMod.get();
+        endMod(mod, now);
+        mod[0] = add(modId, typeName, typeName, typeType, modName, now);
+    }
+
+    /**
+     * Ends the current thread's mod span without starting another, for entrypoints that aren't followed by another
+     * one on the same thread.
+     */
+    synchronized void endMod() {
+        endMod(openMod.get(), System.nanoTime());
+    }
+
+    synchronized void endType(String typeName) {
+        final long now = System.nanoTime();
+        endMod(openMod.get(), now);
+        final Integer span = openTypes.remove(typeName);
+        if (span != null) {
+            ends[span] = now;
+        }
+    }
+
+    private void endMod(int[] mod, long now) {
+        if (mod[0] >= 0) {
+            ends[mod[0]] = now;
+            mod[0] = -1;
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized void write(Path path) throws IOException {
+        final long now = System.nanoTime();
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+            writer.write("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"Mod Loading\"}}");
+            for (int i = 0; i < size; i++) {
+                // Spans that were never closed are still running, so they are cut off at the time of writing
+                final long end = ends[i] != 0 ? ends[i] : now;
+                writer.write(",\n{\"name\":");
+                writeString(writer, names[i]);
+                writer.write(",\"cat\":");
+                writeString(writer, categories[i]);
+                // Entrypoints may run in parallel, so each thread gets its own track
+                writer.write(",\"ph\":\"X\",\"pid\":1,\"tid\":");
+                writer.write(Long.toString(threadIds[i]));
+                writer.write(",\"ts\":");
+                writer.write(Double.toString((starts[i] - origin) / 1000.0));
+                writer.write(",\"dur\":");
+                writer.write(Double.toString((end - starts[i]) / 1000.0));
+                writer.write(",\"args\":{\"entrypoint\":");
+                writeString(writer, typeNames[i]);
+                writer.write(",\"type\":");
+                writeString(writer, typeTypes[i]);
+                if (modNames[i] != null) {
+                    writer.write(",\"modName\":");
+                    writeString(writer, modNames[i]);
+                }
+                writer.write("}}");
+            }
+            writer.write("\n]}\n");
+        }
+    }
+
+    static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int)c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArtifactCacheTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void keysOnSizeAndContents() throws IOException {
+        final Path a = Files.write(dir.resolve("a.bin"), new byte[] {1, 2, 3});
+        final Path sameAsA = Files.write(dir.resolve("same.bin"), new byte[] {1, 2, 3});
+        final Path differentContents = Files.write(dir.resolve("different.bin"), new byte[] {1, 2, 4});
+        final Path longer = Files.write(dir.resolve("longer.bin"), new byte[] {1, 2, 3, 0});
+
+        assertEquals("3-55bc801d", ArtifactCache.key(a));
+        assertEquals(ArtifactCache.key(a), ArtifactCache.key(sameAsA));
+        assertNotEquals(ArtifactCache.key(a), ArtifactCache.key(differentContents));
+        assertNotEquals(ArtifactCache.key(a), ArtifactCache.key(longer));
+        assertEquals(
+            dir.resolve("cache").resolve("flatlaf-3-55bc801d.jar"),
+            ArtifactCache.path(dir.resolve("cache"), a, "flatlaf", ".jar")
+        );
+    }
+
+    @Test
+    void keysFilesInJarsTheSameAsFilesOnDisk() throws IOException {
+        final Path jar = dir.resolve("mod.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("META-INF/jars/flatlaf.jar"));
+            out.write(new byte[] {1, 2, 3});
+            out.closeEntry();
+        }
+        try (FileSystem fs = FileSystems.newFileSystem(URI.create("jar:" + jar.toUri()), Collections.emptyMap())) {
+            assertEquals("3-55bc801d", ArtifactCache.key(fs.getPath("META-INF/jars/flatlaf.jar")));
+        }
+    }
+
+    @Test
+    void extractsOnceAndDeletesOnlyStaleVersions() throws IOException {
+        final Path source = Files.write(dir.resolve("flatlaf.jar"), new byte[] {1, 2, 3});
+        final Path cacheDir = dir.resolve("cache");
+        Files.createDirectories(cacheDir);
+        final Path stale = Files.write(cacheDir.resolve("flatlaf-1-00000000.jar"), new byte[] {0});
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1L)));
+        final Path recent = Files.write(cacheDir.resolve("flatlaf-1-11111111.jar"), new byte[] {1});
+        final Path unrelated = Files.write(cacheDir.resolve("other-1-00000000.jar"), new byte[] {0});
+        Files.setLastModifiedTime(unrelated, FileTime.fromMillis(0L));
+
+        final Path dest = ArtifactCache.path(cacheDir, source, "flatlaf", ".jar");
+        assertTrue(ArtifactCache.extract(source, dest, "flatlaf", ".jar"));
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(dest));
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(recent));
+        assertTrue(Files.exists(unrelated));
+
+        assertFalse(ArtifactCache.extract(source, dest, "flatlaf", ".jar"));
+        // A partial copy is replaced
+        try (OutputStream out = Files.newOutputStream(dest)) {
+            out.write(1);
+        }
+        assertTrue(ArtifactCache.extract(source, dest, "flatlaf", ".jar"));
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(dest));
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpcTest {
+    @Test
+    void roundTripsVersion2() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final IpcWriter writer = new IpcWriter(bytes, IpcProtocol.V2);
+        writer.write(IpcProtocol.BEFORE_ENTRYPOINT_TYPE, "main", "ModInitializer", 3);
+        writer.write(new IpcWriter.Message().set(IpcProtocol.MEMORY_STATS, 0L, 127L, 128L, Long.MAX_VALUE));
+        writer.flush();
+        writer.write(IpcProtocol.BEFORE_SINGLE_ENTRYPOINT, "main", "ModInitializer", "examplemod", "Example Mod");
+        writer.write(IpcProtocol.CUSTOM_BAR_PROGRESS, 1, -1L);
+        writer.close();
+
+        final IpcReader reader = new IpcReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(IpcProtocol.V2, reader.getVersion());
+        assertEquals(IpcProtocol.BEFORE_ENTRYPOINT_TYPE, reader.nextMessage());
+        assertEquals("main", reader.readString());
+        assertEquals("ModInitializer", reader.readString());
+        assertEquals(3L, reader.readLong());
+        assertEquals(IpcProtocol.MEMORY_STATS, reader.nextMessage());
+        assertEquals(0L, reader.readLong());
+        assertEquals(127L, reader.readLong());
+        assertEquals(128L, reader.readLong());
+        assertEquals(Long.MAX_VALUE, reader.readLong());
+        // In the next frame
+        assertEquals(IpcProtocol.BEFORE_SINGLE_ENTRYPOINT, reader.nextMessage());
+        assertEquals("main", reader.readString());
+        assertEquals("ModInitializer", reader.readString());
+        assertEquals("examplemod", reader.readString());
+        assertEquals("Example Mod", reader.readString());
+        assertEquals(IpcProtocol.CUSTOM_BAR_PROGRESS, reader.nextMessage());
+        assertEquals(1L, reader.readLong());
+        assertEquals(-1L, reader.readLong());
+        assertThrows(EOFException.class, reader::nextMessage);
+    }
+
+    @Test
+    void sendsRepeatedStringsByReference() throws IOException {
+        final ByteArrayOutputStream once = new ByteArrayOutputStream();
+        final IpcWriter onceWriter = new IpcWriter(once, IpcProtocol.V2);
+        onceWriter.write(IpcProtocol.AFTER_ENTRYPOINT_TYPE, "a-fairly-long-entrypoint-name");
+        onceWriter.flush();
+
+        final ByteArrayOutputStream twice = new ByteArrayOutputStream();
+        final IpcWriter twiceWriter = new IpcWriter(twice, IpcProtocol.V2);
+        twiceWriter.write(IpcProtocol.AFTER_ENTRYPOINT_TYPE, "a-fairly-long-entrypoint-name");
+        twiceWriter.write(IpcProtocol.AFTER_ENTRYPOINT_TYPE, "a-fairly-long-entrypoint-name");
+        twiceWriter.flush();
+
+        // A message id and a reference
+        assertEquals(once.size() + 2, twice.size());
+        final IpcReader reader = new IpcReader(new ByteArrayInputStream(twice.toByteArray()));
+        for (int i = 0; i < 2; i++) {
+            assertEquals(IpcProtocol.AFTER_ENTRYPOINT_TYPE, reader.nextMessage());
+            assertEquals("a-fairly-long-entrypoint-name", reader.readString());
+        }
+    }
+
+    @Test
+    void growsFramesPastTheirInitialSize() throws IOException {
+        final char[] chars = new char[5000];
+        Arrays.fill(chars, '\u00e9');
+        final String longString = new String(chars);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final IpcWriter writer = new IpcWriter(bytes, IpcProtocol.V2);
+        writer.write(IpcProtocol.AFTER_ENTRYPOINT_TYPE, longString);
+        writer.flush();
+
+        final IpcReader reader = new IpcReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(IpcProtocol.AFTER_ENTRYPOINT_TYPE, reader.nextMessage());
+        assertEquals(longString, reader.readString());
+    }
+
+    @Test
+    void detectsVersion1FromTheFirstByte() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final IpcWriter writer = new IpcWriter(bytes, IpcProtocol.V1);
+        writer.write(IpcProtocol.BEFORE_ENTRYPOINT_TYPE, "main", "ModInitializer", 3);
+        writer.write(new IpcWriter.Message().set(IpcProtocol.MEMORY_USAGE, 100L, 200L));
+        writer.write(IpcProtocol.CLOSE);
+        assertEquals(IpcProtocol.BEFORE_ENTRYPOINT_TYPE, bytes.toByteArray()[0]);
+
+        final IpcReader reader = new IpcReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(IpcProtocol.V1, reader.getVersion());
+        assertEquals(IpcProtocol.BEFORE_ENTRYPOINT_TYPE, reader.nextMessage());
+        assertEquals("main", reader.readString());
+        assertEquals("ModInitializer", reader.readString());
+        assertEquals(3L, reader.readLong());
+        assertEquals(IpcProtocol.MEMORY_USAGE, reader.nextMessage());
+        assertEquals(100L, reader.readLong());
+        assertEquals(200L, reader.readLong());
+        assertEquals(IpcProtocol.CLOSE, reader.nextMessage());
+    }
+
+    @Test
+    void rejectsBadHeaders() {
+        assertThrows(IOException.class, () -> new IpcReader(new ByteArrayInputStream(new byte[] {'M', 'L', 'X', 2})));
+        assertThrows(IOException.class, () -> new IpcReader(new ByteArrayInputStream(
+            new byte[] {'M', 'L', 'S', (byte)(IpcProtocol.LATEST_VERSION + 1)}
+        )));
+    }
+
+    @Test
+    void rejectsMessagesPastTheEndOfTheirFrame() throws IOException {
+        // A frame of one byte holding a message id, whose string argument would be in the next frame
+        final byte[] bytes = {'M', 'L', 'S', IpcProtocol.V2, 1, IpcProtocol.AFTER_ENTRYPOINT_TYPE, 1, 0};
+        final IpcReader reader = new IpcReader(new ByteArrayInputStream(bytes));
+        assertEquals(IpcProtocol.AFTER_ENTRYPOINT_TYPE, reader.nextMessage());
+        assertThrows(EOFException.class, reader::readString);
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LaunchHistoryTest {
+    @TempDir
+    Path dir;
+
+    private static void runEntrypoint(LaunchHistory history, String typeName, String modId, String version) {
+        history.begin(typeName, modId, version);
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        history.end();
+    }
+
+    @Test
+    void averagesEachLaunchsTotal() throws IOException {
+        final Path file = dir.resolve("launch-history.bin");
+        final LaunchHistory first = LaunchHistory.load(file);
+        runEntrypoint(first, "main", "examplemod", "1.0.0");
+        final long firstNanos = first.getLaunchDurations().get("examplemod");
+        assertEquals(firstNanos, first.getExpected("main", "examplemod", "1.0.0"));
+        first.save(file);
+
+        // Two entrypoints of the same type are added up before they're averaged
+        final LaunchHistory second = LaunchHistory.load(file);
+        assertEquals(firstNanos, second.getExpected("main", "examplemod", "1.0.0"));
+        runEntrypoint(second, "main", "examplemod", "1.0.0");
+        runEntrypoint(second, "main", "examplemod", "1.0.0");
+        final long secondNanos = second.getLaunchDurations().get("examplemod");
+        assertEquals(
+            (long)(firstNanos * (1 - LaunchHistory.SMOOTHING) + secondNanos * LaunchHistory.SMOOTHING),
+            second.getExpected("main", "examplemod", "1.0.0")
+        );
+        assertEquals(-1L, second.getExpected("client", "examplemod", "1.0.0"));
+    }
+
+    @Test
+    void forgetsOtherVersions() throws IOException {
+        final Path file = dir.resolve("launch-history.bin");
+        final LaunchHistory first = LaunchHistory.load(file);
+        runEntrypoint(first, "main", "examplemod", "1.0.0");
+        first.save(file);
+
+        final LaunchHistory second = LaunchHistory.load(file);
+        assertEquals(-1L, second.getExpected("main", "examplemod", "1.0.1"));
+        runEntrypoint(second, "main", "examplemod", "1.0.1");
+        final long nanos = second.getLaunchDurations().get("examplemod");
+        assertEquals(nanos, second.getExpected("main", "examplemod", "1.0.1"));
+        assertEquals(-1L, second.getExpected("main", "examplemod", "1.0.0"));
+    }
+
+    @Test
+    void dropsEntriesNotSeenForMaxAge() throws IOException {
+        final Path file = dir.resolve("launch-history.bin");
+        final LaunchHistory first = LaunchHistory.load(file);
+        runEntrypoint(first, "main", "examplemod", "1.0.0");
+        first.save(file);
+        for (int i = 0; i < LaunchHistory.MAX_AGE; i++) {
+            LaunchHistory.load(file).save(file);
+        }
+        assertNotEquals(-1L, LaunchHistory.load(file).getExpected("main", "examplemod", "1.0.0"));
+        LaunchHistory.load(file).save(file);
+        assertEquals(-1L, LaunchHistory.load(file).getExpected("main", "examplemod", "1.0.0"));
+    }
+
+    @Test
+    void startsOverWhenTheFileIsDamaged() throws IOException {
+        final Path file = dir.resolve("launch-history.bin");
+        final LaunchHistory history = LaunchHistory.load(file);
+        runEntrypoint(history, "main", "examplemod", "1.0.0");
+        runEntrypoint(history, "main", "othermod", "1.0.0");
+        history.save(file);
+        assertEquals(2, LaunchHistory.load(file).size());
+
+        final byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+        assertEquals(0, LaunchHistory.load(file).size());
+        Files.write(file, new byte[] {1, 2, 3, 4, 5});
+        assertEquals(0, LaunchHistory.load(file).size());
+    }
+}
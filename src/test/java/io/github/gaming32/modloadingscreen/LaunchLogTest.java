@@ -0,0 +1,139 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LaunchLogTest {
+    @TempDir
+    Path dir;
+
+    private static LaunchLog.Launch launch(long timestamp, long startupMillis, String... mods) {
+        final LaunchLog.Launch launch = new LaunchLog.Launch(timestamp, startupMillis);
+        for (int i = 0; i < mods.length; i += 3) {
+            launch.versions.put(mods[i], mods[i + 1]);
+            launch.entrypointMicros.put(mods[i], Long.parseLong(mods[i + 2]));
+        }
+        return launch;
+    }
+
+    @Test
+    void roundTrips() throws IOException {
+        final Path file = dir.resolve("launch-log.tsv");
+        assertTrue(LaunchLog.read(file).isEmpty());
+        LaunchLog.append(
+            file, launch(1000L, 5000L, "examplemod", "1.0.0", "1500", "othermod", "2.0\t1", "0"), Collections.emptyList()
+        );
+        LaunchLog.append(file, launch(2000L, 6000L), LaunchLog.read(file));
+
+        final List<LaunchLog.Launch> launches = LaunchLog.read(file);
+        assertEquals(2, launches.size());
+        assertEquals(1000L, launches.get(0).timestamp);
+        assertEquals(5000L, launches.get(0).startupMillis);
+        assertEquals("1.0.0", launches.get(0).versions.get("examplemod"));
+        assertEquals("2.0 1", launches.get(0).versions.get("othermod"));
+        assertEquals(1500L, launches.get(0).entrypointMicros.get("examplemod"));
+        assertEquals(6000L, launches.get(1).startupMillis);
+        assertTrue(launches.get(1).versions.isEmpty());
+    }
+
+    @Test
+    void skipsTruncatedBlocks() throws IOException {
+        final Path file = dir.resolve("launch-log.tsv");
+        Files.write(file, Arrays.asList(
+            "L\t1000\t5000\t1",
+            "M\texamplemod\t1.0.0\t1500",
+            // Cut short by a crash after one of its two mods
+            "L\t2000\t6000\t2",
+            "M\texamplemod\t1.0.0\t1500",
+            "L\t3000\t7000\t1",
+            "M\texamplemod\t1.0.0\tnot a number",
+            "garbage",
+            "L\t4000\t8000\t1",
+            "M\texamplemod\t1.0.1\t1600",
+            "L\t5000\t9000\t1"
+        ), StandardCharsets.UTF_8);
+
+        final List<LaunchLog.Launch> launches = LaunchLog.read(file);
+        assertEquals(2, launches.size());
+        assertEquals(1000L, launches.get(0).timestamp);
+        assertEquals(4000L, launches.get(1).timestamp);
+        assertEquals("1.0.1", launches.get(1).versions.get("examplemod"));
+    }
+
+    @Test
+    void compactsToTheLatestLaunches() throws IOException {
+        final Path file = dir.resolve("launch-log.tsv");
+        for (int i = 0; i < LaunchLog.COMPACT_AT - 1; i++) {
+            LaunchLog.append(file, launch(i, 5000L, "examplemod", "1.0.0", "1500"), LaunchLog.read(file));
+        }
+        assertEquals(LaunchLog.COMPACT_AT - 1, LaunchLog.read(file).size());
+
+        LaunchLog.append(file, launch(LaunchLog.COMPACT_AT - 1, 5000L), LaunchLog.read(file));
+        final List<LaunchLog.Launch> launches = LaunchLog.read(file);
+        assertEquals(LaunchLog.KEEP, launches.size());
+        assertEquals(LaunchLog.COMPACT_AT - LaunchLog.KEEP, launches.get(0).timestamp);
+        assertEquals(LaunchLog.COMPACT_AT - 1, launches.get(launches.size() - 1).timestamp);
+    }
+
+    @Test
+    void takesTheMedian() {
+        assertEquals(7L, StartupReport.median(new long[] {7L}));
+        assertEquals(5L, StartupReport.median(new long[] {9L, 1L, 5L}));
+        assertEquals(4L, StartupReport.median(new long[] {9L, 1L, 5L, 3L}));
+    }
+
+    @Test
+    void needsEnoughLaunchesForABaseline() {
+        final StartupReport report = new StartupReport();
+        report.compare(
+            launch(3000L, 100_000L),
+            Arrays.asList(launch(1000L, 1000L), launch(2000L, 1000L)),
+            25
+        );
+        assertFalse(report.isRegression());
+        assertTrue(report.getLines().get(1).startsWith("Not enough previous launches"));
+    }
+
+    @Test
+    void reportsSlowdownsPastTheThreshold() {
+        final List<LaunchLog.Launch> previous = new ArrayList<>();
+        // Only the last BASELINE_LAUNCHES count, so this one doesn't move the median
+        previous.add(launch(0L, 100_000L, "examplemod", "1.0.0", "100000000"));
+        previous.add(launch(1000L, 1000L, "examplemod", "1.0.0", "100000", "removedmod", "1.0.0", "0"));
+        previous.add(launch(2000L, 900L, "examplemod", "1.0.0", "100000", "removedmod", "1.0.0", "0"));
+        previous.add(launch(3000L, 1100L, "examplemod", "1.0.0", "100000", "removedmod", "1.0.0", "0"));
+        previous.add(launch(4000L, 1000L, "examplemod", "1.0.0", "100000", "removedmod", "1.0.0", "0"));
+        previous.add(launch(5000L, 1000L, "examplemod", "1.0.0", "100000", "removedmod", "1.0.0", "0"));
+        assertEquals(StartupReport.BASELINE_LAUNCHES, previous.size() - 1);
+
+        // 25% slower isn't more than 25%
+        final StartupReport atThreshold = new StartupReport();
+        atThreshold.compare(launch(6000L, 1250L, "examplemod", "1.0.0", "100000"), previous, 25);
+        assertFalse(atThreshold.isRegression());
+        assertTrue(atThreshold.getLines().contains("Baseline is 1000 ms (median of the last 5 launches), +25%"));
+
+        final StartupReport report = new StartupReport();
+        report.compare(
+            launch(6000L, 1300L, "examplemod", "1.1.0", "400000", "addedmod", "1.0.0", "10000"), previous, 25
+        );
+        assertTrue(report.isRegression());
+        final List<String> lines = report.getLines();
+        assertTrue(lines.contains("  + addedmod 1.0.0"));
+        assertTrue(lines.contains("  * examplemod 1.0.0 -> 1.1.0"));
+        assertTrue(lines.contains("  - removedmod 1.0.0"));
+        assertTrue(lines.contains("  examplemod: 100 ms -> 400 ms (+300 ms)"));
+        // Below the noise floor
+        assertFalse(lines.stream().anyMatch(line -> line.startsWith("  addedmod:")));
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.gaming32.modloadingscreen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscQueueTest {
+    @Test
+    void rejectsCapacitiesThatArentPowersOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new MpscQueue<>(3, () -> new long[1]));
+    }
+
+    @Test
+    void claimFailsWhenFull() {
+        final MpscQueue<long[]> queue = new MpscQueue<>(4, () -> new long[1]);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, queue.claim());
+        }
+        assertEquals(-1L, queue.claim());
+        assertEquals(4, queue.size());
+
+        // Claimed, but not yet published, so still not free
+        assertEquals(-1L, queue.peek());
+        queue.publish(0);
+        queue.release(queue.peek());
+        assertEquals(4L, queue.claim());
+        assertEquals(-1L, queue.claim());
+    }
+
+    @Test
+    void keepsOrderAcrossWraps() {
+        final MpscQueue<long[]> queue = new MpscQueue<>(4, () -> new long[1]);
+        long expected = 0;
+        for (long value = 0; value < 100; value++) {
+            final long position = queue.claim();
+            assertNotEquals(-1L, position);
+            queue.get(position)[0] = value;
+            queue.publish(position);
+            // Lets the queue fill up before it's drained, so that both the full and the empty case wrap
+            if (queue.size() == queue.capacity()) {
+                long next;
+                while ((next = queue.peek()) != -1L) {
+                    assertEquals(expected++, queue.get(next)[0]);
+                    queue.release(next);
+                }
+                assertEquals(0, queue.size());
+            }
+        }
+        assertEquals(100L, expected);
+    }
+
+    @Test
+    void reusesElements() {
+        final MpscQueue<long[]> queue = new MpscQueue<>(2, () -> new long[1]);
+        final long[] first = queue.get(queue.claim());
+        queue.publish(0);
+        queue.release(queue.peek());
+        queue.publish(queue.claim());
+        queue.release(queue.peek());
+        assertSame(first, queue.get(queue.claim()));
+    }
+}